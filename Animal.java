@@ -2,6 +2,9 @@ import java.util.List;
 
 /**
  * A class representing shared characteristics of animals.
+ * The state of each animal - its age, food level, sex, cell and
+ * random stream - is
+ * kept in the EntityStore of its field under the animal's id.
  * 
  * @author David J. Barnes and Michael Kölling
  * @author Amirali Koochaki . Marouane el Moubarik alaoui .Seyed Mohammad Reza Shahrestani
@@ -13,21 +16,58 @@ public abstract class Animal
     private boolean alive;
     // The animal's field.
     private Field field;
-    // The animal's position in the field.
-    private Location location;
+    // The animal's id in the field's entity store.
+    private int id;
+    // Scratch space for neighbourhood queries. Animals on the same
+    // thread act one at a time, so each thread needs only one buffer.
+    private static final ThreadLocal<int[]> adjacent =
+        ThreadLocal.withInitial(() -> new int[Field.MAX_ADJACENT]);
+
     /**
      * Create a new animal at location in field.
      * 
+     * @param species The species of the animal.
      * @param field The field currently occupied.
      * @param location The location within the field.
      */
-    public Animal(Field field, Location location)
+    public Animal(Species species, Field field, Location location)
     {
-        alive = true;
         this.field = field;
+        enter(species, location);
+    }
+
+    /**
+     * Bring the animal to life at a location in its field: give it a
+     * new id, place it and start its random stream. A dead animal taken
+     * from the entity store's pool comes back to life this way.
+     * 
+     * @param species The species of the animal.
+     * @param location The location within the field.
+     */
+    protected void enter(Species species, Location location)
+    {
+        alive = true;
+        id = field.getEntities().allocate(this, species);
         setLocation(location);
+        int cell = field.cellOf(location.getRow(), location.getCol());
+        field.getEntities().setRandomState(id, Randomizer.streamSeed(field.getSeed(), field.getStep(), cell));
     }
     
+    /**
+     * Recreate an animal whose state is already in the field's entity
+     * store, such as after restoring a checkpoint.
+     * 
+     * @param field The field currently occupied.
+     * @param id The animal's id in the field's entity store.
+     */
+    protected Animal(Field field, int id)
+    {
+        alive = true;
+        this.field = field;
+        this.id = id;
+        field.getEntities().setEntity(id, this);
+    }
+
     /**
      * Make this animal act - that is: make it do
      * whatever it wants/needs to do.
@@ -45,26 +85,105 @@ public abstract class Animal
     }
 
     /**
-     * Indicate that the animal is no longer alive.
+     * Indicate that the animal is no longer alive, through overcrowding.
      * It is removed from the field.
      */
     protected void setDead()
     {
+        setDead(EventRing.Type.OVERCROWDING);
+    }
+
+    /**
+     * Indicate that the animal is no longer alive.
+     * It is removed from the field, and how it died is recorded for
+     * the simulation to report.
+     * @param cause How the animal died.
+     */
+    protected void setDead(EventRing.Type cause)
+    {
+        die(EventRing.fate(cause, null));
+    }
+
+    /**
+     * Indicate that the animal has been eaten. It is removed from the
+     * field like any dead animal, and counted as prey of its species.
+     * @param predator The species that ate it.
+     */
+    protected void setEaten(Species predator)
+    {
+        field.getEntities().recordPredation(id);
+        die(EventRing.fate(EventRing.Type.PREDATION, predator));
+    }
+
+    /**
+     * Remove the animal from the field and record how it died, unless
+     * it is already dead: the first cause of death is the one kept.
+     * @param fate How it died, as made by EventRing.fate.
+     */
+    private void die(int fate)
+    {
+        if(!alive) {
+            return;
+        }
         alive = false;
+        field.getEntities().setFate(id, fate, field.getEntities().getCell(id));
+        Location location = getLocation();
         if(location != null) {
             field.clear(location);
-            location = null;
-            field = null;
+            field.getEntities().setCell(id, EntityStore.NO_CELL);
         }
     }
 
+    /**
+     * Eat the first prey next to the animal, going clockwise from the
+     * given neighbour. What the animal eats, and how much food each
+     * prey is worth, comes from the species rules of its field.
+     * In a synchronous step the prey is only claimed, and the meal
+     * happens once the claims are settled.
+     * @param start The neighbour to start from, 0 to
+     *              Field.MAX_ADJACENT - 1.
+     * @return Where the prey was, or null if there was none.
+     */
+    protected Location eat(int start)
+    {
+        EntityStore entities = field.getEntities();
+        SpeciesRules rules = field.getRules();
+        Species kind = entities.getSpecies(id);
+        Location location = getLocation();
+        int n = Field.pickNeighbour(field.adjacentMask(location, rules.getDiet(kind)), start);
+        if(n < 0) {
+            return null;
+        }
+        Location where = field.neighbour(location, n);
+        int cell = field.cellOf(where.getRow(), where.getCol());
+        Species prey = entities.getSpecies(field.getIdAt(cell));
+        if(field.isSynchronous()) {
+            // The prey is only eaten if the claim to its cell wins.
+            field.claimPrey(id, where, rules.getFoodValue(kind, prey));
+            return where;
+        }
+        Object eaten = field.getObjectAt(cell);
+        if(eaten instanceof Animal) {
+            ((Animal) eaten).setEaten(kind);
+        }
+        else {
+            ((Plant) eaten).setEaten(kind);
+        }
+        setFoodLevel(rules.getFoodValue(kind, prey));
+        return where;
+    }
+
     /**
      * Return the animal's location.
      * @return The animal's location.
      */
     protected Location getLocation()
     {
-        return location;
+        int cell = field.getEntities().getCell(id);
+        if(cell == EntityStore.NO_CELL) {
+            return null;
+        }
+        return field.locationOf(cell);
     }
     
     /**
@@ -73,13 +192,123 @@ public abstract class Animal
      */
     protected void setLocation(Location newLocation)
     {
+        Location location = getLocation();
         if(location != null) {
-            field.clear(location);
+            field.move(id, location, newLocation);
+        }
+        else {
+            field.place(id, newLocation);
         }
-        location = newLocation;
-        field.place(this, newLocation);
     }
     
+    /**
+     * Return the animal's id in the field's entity store.
+     * @return The animal's id.
+     */
+    protected int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Give the animal another id, to which its state has been moved
+     * (see Field.swapIds).
+     * @param id The animal's new id.
+     */
+    protected void setId(int id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return The animal's age, in steps.
+     */
+    protected int getAge()
+    {
+        return field.getStep() - field.getEntities().getBirthStep(id);
+    }
+
+    /**
+     * Set the animal's age. It grows a step older with every step from
+     * then on without being told.
+     * @param age The animal's new age.
+     */
+    protected void setAge(int age)
+    {
+        field.getEntities().setBirthStep(id, field.getStep() - age);
+    }
+
+    /**
+     * @return The animal's food level.
+     */
+    protected int getFoodLevel()
+    {
+        return field.getEntities().getFoodLevel(id);
+    }
+
+    /**
+     * @param foodLevel The animal's new food level.
+     */
+    protected void setFoodLevel(int foodLevel)
+    {
+        field.getEntities().setFoodLevel(id, foodLevel);
+    }
+
+    /**
+     * @return true if the animal is male.
+     */
+    protected boolean isMale()
+    {
+        return field.getEntities().isMale(id);
+    }
+
+    /**
+     * @param male Whether the animal is male.
+     */
+    protected void setMale(boolean male)
+    {
+        field.getEntities().setMale(id, male);
+    }
+
+    /**
+     * Draw an int from the animal's own random stream.
+     * @param bound The upper bound. Must be positive.
+     * @return An int between 0 (inclusive) and bound (exclusive).
+     */
+    protected int nextInt(int bound)
+    {
+        return Randomizer.toInt(field.getEntities().nextRandom(id), bound);
+    }
+
+    /**
+     * Draw a double from the animal's own random stream.
+     * @return A double between 0 (inclusive) and 1 (exclusive).
+     */
+    protected double nextDouble()
+    {
+        return Randomizer.toDouble(field.getEntities().nextRandom(id));
+    }
+
+    /**
+     * Draw a boolean from the animal's own random stream.
+     * @return true or false, with equal chance.
+     */
+    protected boolean nextBoolean()
+    {
+        return field.getEntities().nextRandom(id) < 0;
+    }
+
+    /**
+     * Return a buffer to hand to the field's neighbourhood queries,
+     * such as Field.adjacentCells. Its contents only stay valid
+     * until the next query.
+     * @return A buffer with room for Field.MAX_ADJACENT cells.
+     */
+    protected static int[] cellBuffer()
+    {
+        return adjacent.get();
+    }
+
     /**
      * Return the animal's field.
      * @return The animal's field.
@@ -42,6 +42,15 @@ public class Counter
         return count;
     }
 
+    /**
+     * Set the current count.
+     * @param count How many of this type exist in the simulation.
+     */
+    public void setCount(int count)
+    {
+        this.count = count;
+    }
+
     /**
      * Increment the current count by one.
      */
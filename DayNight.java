@@ -74,6 +74,15 @@ public class DayNight
     }
 
     
+    /**
+     * returns true if the time is set by hand
+     * rather than by the steps
+     */
+    public boolean isManual()
+    {
+        return button;
+    }
+
     /**
      * returns a string of current time
      */
@@ -0,0 +1,320 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run many independent simulations without a display at once, such as
+ * a sweep over field sizes, seeds and species rules, and write one
+ * line of results per run to a summary file.
+ *
+ * Every run has its own field, and so its own random streams,
+ * environment and rules, and runs on one thread; the runs themselves
+ * are spread over a fixed pool of threads. A run stops early once
+ * fewer than two species are left.
+ *
+ * The sweep is described by a text file with one setting per line;
+ * blank lines and lines starting with # are ignored.
+ *
+ *     size 150x100 300x200
+ *         The fields to run, as width x depth. The default is 150x100.
+ *     seed 1 2 3
+ *         The seeds to run. The default is Randomizer.getSeed().
+ *     steps 2000
+ *         The most steps of each run. The default is 2000.
+ *     rule life Shark 15 120 0.30 3
+ *         A species rule (see SpeciesRules) for every run.
+ *     vary start Shark 0.01 | start Shark 0.02 | start Shark 0.04
+ *         Species rules to try in turn, one per run.
+ *
+ * Every combination of a size, a seed and one choice from each vary
+ * line is run, so the lines above give 2 x 3 x 3 = 18 runs.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class Ensemble
+{
+    // The most steps of a run, unless the sweep says otherwise.
+    private static final int DEFAULT_STEPS = 2000;
+
+    // The runs of the sweep, in the order they are written out.
+    private List<Run> runs;
+
+    /**
+     * Create the runs of a sweep described by a file.
+     * @param fileName The file describing the sweep.
+     * @throws IOException If the file cannot be read, or holds a line
+     *                     that is not a setting or a rule.
+     */
+    public Ensemble(String fileName) throws IOException
+    {
+        List<int[]> sizes = new ArrayList<>();
+        List<Long> seeds = new ArrayList<>();
+        int steps = DEFAULT_STEPS;
+        StringBuilder fixedRules = new StringBuilder();
+        List<String[]> variations = new ArrayList<>();
+
+        try(BufferedReader in = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while((line = in.readLine()) != null) {
+                lineNumber++;
+                String[] words = line.trim().split("\\s+", 2);
+                if(words[0].isEmpty() || words[0].startsWith("#")) {
+                    continue;
+                }
+                String rest = words.length > 1 ? words[1].trim() : "";
+                try {
+                    switch(words[0]) {
+                        case "size":
+                            for(String size : rest.split("\\s+")) {
+                                String[] parts = size.split("x");
+                                sizes.add(new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) });
+                            }
+                            break;
+                        case "seed":
+                            for(String seed : rest.split("\\s+")) {
+                                seeds.add(Long.parseLong(seed));
+                            }
+                            break;
+                        case "steps":
+                            steps = Integer.parseInt(rest);
+                            break;
+                        case "rule":
+                            fixedRules.append(rest).append('\n');
+                            break;
+                        case "vary":
+                            String[] choices = rest.split("\\|");
+                            for(int i = 0; i < choices.length; i++) {
+                                choices[i] = choices[i].trim();
+                            }
+                            variations.add(choices);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("not a setting");
+                    }
+                }
+                catch(RuntimeException e) {
+                    throw new IOException(fileName + ", line " + lineNumber + ": " + e.getMessage()
+                                          + ": " + line.trim());
+                }
+            }
+        }
+        if(sizes.isEmpty()) {
+            sizes.add(new int[] { 150, 100 });
+        }
+        if(seeds.isEmpty()) {
+            seeds.add((long) Randomizer.getSeed());
+        }
+
+        runs = new ArrayList<>();
+        int[] choice = new int[variations.size()];
+        do {
+            StringBuilder rules = new StringBuilder(fixedRules);
+            StringBuilder varied = new StringBuilder();
+            for(int v = 0; v < choice.length; v++) {
+                String rule = variations.get(v)[choice[v]];
+                rules.append(rule).append('\n');
+                varied.append(v > 0 ? "; " : "").append(rule);
+            }
+            SpeciesRules parsed;
+            try {
+                parsed = SpeciesRules.parse(rules.toString());
+            }
+            catch(IllegalArgumentException e) {
+                throw new IOException(fileName + ": " + e.getMessage());
+            }
+            for(int[] size : sizes) {
+                for(long seed : seeds) {
+                    runs.add(new Run(runs.size(), size[0], size[1], seed, steps, parsed, varied.toString()));
+                }
+            }
+        } while(nextChoice(choice, variations));
+    }
+
+    /**
+     * @return The number of runs in the sweep.
+     */
+    public int getRunCount()
+    {
+        return runs.size();
+    }
+
+    /**
+     * Carry out every run of the sweep and write a summary line for
+     * each, in the order of the runs, to a CSV file.
+     * @param threads The number of runs to carry out at once.
+     * @param summaryFile The file to write the summary to.
+     * @throws IOException If the summary cannot be written.
+     * @throws InterruptedException If interrupted while waiting for
+     *                              the runs.
+     */
+    public void run(int threads, String summaryFile) throws IOException, InterruptedException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Run>> done = new ArrayList<>();
+        try {
+            for(Run run : runs) {
+                done.add(pool.submit(() -> {
+                    run.carryOut();
+                    System.out.println("Run " + (run.index + 1) + "/" + runs.size() + ": "
+                                       + run.steps + " steps in " + run.millis + " ms");
+                    return run;
+                }));
+            }
+            for(Future<Run> future : done) {
+                future.get();
+            }
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("A run failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(summaryFile),
+                                                                      StandardCharsets.UTF_8))) {
+            StringBuilder header = new StringBuilder("run,width,depth,seed,rules,steps,viable");
+            for(int kind = 0; kind < Species.count(); kind++) {
+                header.append(',').append(Species.fromOrdinal(kind).getName());
+            }
+            header.append(",births,deaths,eaten,ms");
+            out.println(header);
+            for(Run run : runs) {
+                out.println(run.summary());
+            }
+        }
+    }
+
+    /**
+     * Move on to the next combination of choices, like counting.
+     * @param choice The choice made from each variation.
+     * @param variations The choices of each variation.
+     * @return false once every combination has been made.
+     */
+    private static boolean nextChoice(int[] choice, List<String[]> variations)
+    {
+        for(int v = choice.length - 1; v >= 0; v--) {
+            if(++choice[v] < variations.get(v).length) {
+                return true;
+            }
+            choice[v] = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Run a sweep. The arguments are the file describing the sweep,
+     * the CSV file to write the summary to and, optionally, the number
+     * of runs to carry out at once, which defaults to the number of
+     * processors.
+     * @param args The command line arguments.
+     * @throws IOException If the sweep cannot be read or the summary
+     *                     cannot be written.
+     * @throws InterruptedException If interrupted while running.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length < 2) {
+            System.out.println("Usage: java Ensemble sweep-file summary.csv [threads]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                                      : Runtime.getRuntime().availableProcessors();
+        Ensemble ensemble = new Ensemble(args[0]);
+        long start = System.nanoTime();
+        ensemble.run(threads, args[1]);
+        System.out.println("Ran " + ensemble.getRunCount() + " simulations on " + threads
+                           + " threads in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * One simulation of the sweep and, once it has run, its results.
+     */
+    private static class Run
+    {
+        // The position of the run in the sweep.
+        final int index;
+        // The size of the field, the seed and the most steps to run.
+        final int width, depth;
+        final long seed;
+        final int maxSteps;
+        // The rules of the run, and the varied ones as text.
+        final SpeciesRules rules;
+        final String varied;
+
+        // The results: the steps run, whether the run was still
+        // viable, the final count of each species, the totals of
+        // births, deaths and predations, and the time taken.
+        int steps;
+        boolean viable;
+        int[] counts;
+        long births, deaths, eaten;
+        long millis;
+
+        /**
+         * Describe a run.
+         */
+        Run(int index, int width, int depth, long seed, int maxSteps, SpeciesRules rules, String varied)
+        {
+            this.index = index;
+            this.width = width;
+            this.depth = depth;
+            this.seed = seed;
+            this.maxSteps = maxSteps;
+            this.rules = rules;
+            this.varied = varied;
+        }
+
+        /**
+         * Run the simulation and keep its results.
+         */
+        void carryOut()
+        {
+            long start = System.nanoTime();
+            StatsObserver stats = new StatsObserver(System.out, 0);
+            Simulator simulator = new Simulator(depth, width, seed, rules, stats);
+            simulator.simulate(maxSteps);
+            Field field = simulator.getField();
+            EntityStore entities = field.getEntities();
+            steps = simulator.getStep();
+            viable = stats.isViable(field);
+            counts = new int[Species.count()];
+            for(int kind = 0; kind < counts.length; kind++) {
+                Species species = Species.fromOrdinal(kind);
+                counts[kind] = entities.count(species);
+                births += entities.getBirths(species);
+                deaths += entities.getDeaths(species);
+                eaten += entities.getPredations(species);
+            }
+            millis = (System.nanoTime() - start) / 1000000;
+        }
+
+        /**
+         * @return The results of the run as a line of CSV.
+         */
+        String summary()
+        {
+            StringBuilder line = new StringBuilder();
+            line.append(index + 1).append(',').append(width).append(',').append(depth)
+                .append(',').append(seed).append(",\"").append(varied).append("\",")
+                .append(steps).append(',').append(viable);
+            for(int count : counts) {
+                line.append(',').append(count);
+            }
+            line.append(',').append(births).append(',').append(deaths).append(',').append(eaten)
+                .append(',').append(millis);
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,714 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hold the state of every animal and plant in a field as columns of
+ * primitive arrays indexed by entity id. An Animal or Plant object
+ * only carries its id and reads and writes its birth step, food level, sex,
+ * cell and random stream through the store, so the data the simulation
+ * works on sits in a few flat arrays rather than in millions of small
+ * objects.
+ *
+ * Each column is split into fixed-size pages. When the store runs out
+ * of ids it adds a page to every column instead of copying them, so
+ * the slot of an existing id never moves. That lets the ParallelStepper
+ * give birth on one thread while other threads update their own
+ * entities.
+ *
+ * The getters and setters take no lock, so the tables of pages are
+ * volatile, and a new table is complete, new page included, before it
+ * is stored. A thread that reads a table therefore sees every page it
+ * holds. An id on a new page reaches other threads only after its
+ * allocation: through the lock of allocate, the join of the stepper's
+ * tasks, or the CAS of a concurrent field. So a thread handed such an
+ * id always reads a table that has its page.
+ *
+ * Id 0 is never handed out, so that a Field can use it to mark an
+ * empty cell.
+ *
+ * The store also counts how many entities of each species stand in
+ * the field. The counts change whenever an entity is placed in its
+ * first cell or leaves the field, so reading them costs nothing
+ * however large the field is. Alongside them it keeps running totals
+ * of the births, deaths and predations of each species.
+ *
+ * The objects of released entities are kept in a pool per species, so
+ * that a newborn can take over a dead object instead of allocating one
+ * (see reuse). How many births were served from the pool is counted,
+ * so that it can be checked that births in a steady state allocate
+ * nothing.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class EntityStore
+{
+    // The id that never belongs to an entity.
+    public static final int NONE = 0;
+
+    // The cell of an entity that is not in the field.
+    public static final int NO_CELL = -1;
+
+    // Each page holds 2^PAGE_BITS ids.
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // The animal or plant object for each id.
+    private volatile Object[][] entities;
+
+    // The ordinal of each entity's species.
+    private volatile byte[][] species;
+
+    // The cell each entity occupies, or NO_CELL.
+    private volatile int[][] cell;
+
+    // The step each entity was born in, or would have been born in
+    // had it started at age zero, so that its age is the current step
+    // less this. Ages then need no updating from step to step.
+    private volatile int[][] birthStep;
+
+    // Each entity's food level.
+    private volatile int[][] foodLevel;
+
+    // Whether each entity is male.
+    private volatile boolean[][] male;
+
+    // The state of each entity's random stream.
+    private volatile long[][] random;
+
+    // How and where each entity died, once it has, as set by setFate:
+    // the cell in the high half and how it died in the low half. 0
+    // until then, and again once its death has been reported.
+    private volatile long[][] fate;
+
+    // The number of pages in every column.
+    private int pages;
+
+    // For each species, by ordinal, the objects of released entities
+    // that newborns can reuse.
+    private Object[][] pool;
+    private int[] poolSize;
+
+    // Ids that have been released and can be handed out again.
+    private int[] freeIds;
+    private int freeCount;
+
+    // The lowest id that has never been handed out.
+    private int nextId;
+
+    // The number of ids currently in use.
+    private int size;
+
+    // The number of free ids and the lowest new id when markIds was
+    // last called.
+    private int markedFreeCount, markedNextId;
+
+    // The number of entities of each species that occupy a cell,
+    // indexed by species ordinal. The counters are spread one cache
+    // line apart, as threads update them at the same time.
+    private final AtomicIntegerArray population;
+
+    // The distance between two counters in population.
+    private static final int COUNT_STRIDE = 16;
+
+    // The number of entities of each species ever born, released and
+    // eaten, at species ordinal * EVENT_STRIDE plus BORN, DIED or EATEN.
+    private final AtomicLongArray events;
+
+    // The offsets of the event counters of a species, and the distance
+    // between the counters of two species.
+    private static final int BORN = 0;
+    private static final int DIED = 1;
+    private static final int EATEN = 2;
+    private static final int REUSED = 3;
+    private static final int EVENT_STRIDE = 8;
+
+    /**
+     * Create an empty store.
+     */
+    public EntityStore()
+    {
+        entities = new Object[0][];
+        species = new byte[0][];
+        cell = new int[0][];
+        birthStep = new int[0][];
+        foodLevel = new int[0][];
+        male = new boolean[0][];
+        random = new long[0][];
+        fate = new long[0][];
+        population = new AtomicIntegerArray(Species.count() * COUNT_STRIDE);
+        events = new AtomicLongArray(Species.count() * EVENT_STRIDE);
+        pool = new Object[Species.count()][16];
+        poolSize = new int[Species.count()];
+        freeIds = new int[PAGE_SIZE];
+        addPage();
+        clear();
+    }
+
+    /**
+     * Release every id at once.
+     */
+    public synchronized void clear()
+    {
+        for(int page = 0; page < pages; page++) {
+            Arrays.fill(entities[page], null);
+        }
+        freeCount = 0;
+        nextId = NONE + 1;
+        size = 0;
+        for(int kind = 0; kind < Species.count(); kind++) {
+            population.set(kind * COUNT_STRIDE, 0);
+            events.set(kind * EVENT_STRIDE + BORN, 0);
+            events.set(kind * EVENT_STRIDE + DIED, 0);
+            events.set(kind * EVENT_STRIDE + EATEN, 0);
+            events.set(kind * EVENT_STRIDE + REUSED, 0);
+            Arrays.fill(pool[kind], 0, poolSize[kind], null);
+            poolSize[kind] = 0;
+        }
+    }
+
+    /**
+     * Hand out an id for a new entity. All of its columns start
+     * at zero and it is not yet in any cell.
+     * This may be called from several threads at once.
+     * @param entity The animal or plant object the id belongs to.
+     * @param kind The entity's species.
+     * @return The new id.
+     */
+    public synchronized int allocate(Object entity, Species kind)
+    {
+        int id;
+        if(freeCount > 0) {
+            id = freeIds[--freeCount];
+        }
+        else {
+            if(nextId == pages * PAGE_SIZE) {
+                addPage();
+            }
+            id = nextId++;
+        }
+        int page = id >>> PAGE_BITS;
+        int slot = id & PAGE_MASK;
+        entities[page][slot] = entity;
+        species[page][slot] = (byte) kind.ordinal();
+        cell[page][slot] = NO_CELL;
+        birthStep[page][slot] = 0;
+        foodLevel[page][slot] = 0;
+        male[page][slot] = false;
+        random[page][slot] = 0;
+        fate[page][slot] = 0;
+        size++;
+        events.incrementAndGet(kind.ordinal() * EVENT_STRIDE + BORN);
+        return id;
+    }
+
+    /**
+     * Give an id back so that it can be reused. This must only
+     * happen once nothing refers to the entity any more, as its object
+     * goes into the pool of its species for a newborn to take over.
+     * @param id The id to release.
+     */
+    public synchronized void release(int id)
+    {
+        setCell(id, NO_CELL);
+        int kind = species[id >>> PAGE_BITS][id & PAGE_MASK];
+        Object entity = entities[id >>> PAGE_BITS][id & PAGE_MASK];
+        if(entity != null) {
+            if(poolSize[kind] == pool[kind].length) {
+                pool[kind] = Arrays.copyOf(pool[kind], poolSize[kind] * 2);
+            }
+            pool[kind][poolSize[kind]++] = entity;
+        }
+        entities[id >>> PAGE_BITS][id & PAGE_MASK] = null;
+        events.incrementAndGet(kind * EVENT_STRIDE + DIED);
+        freeIds[freeCount++] = id;
+        size--;
+    }
+
+    /**
+     * Take the object of a released entity of the given species, for a
+     * newborn to reuse. The object must be given a new id with allocate
+     * before it is used.
+     * @param kind The species of the newborn.
+     * @return A dead object of the species, or null if there is none.
+     */
+    public synchronized Object reuse(Species kind)
+    {
+        int k = kind.ordinal();
+        if(poolSize[k] == 0) {
+            return null;
+        }
+        Object entity = pool[k][--poolSize[k]];
+        pool[k][poolSize[k]] = null;
+        events.incrementAndGet(k * EVENT_STRIDE + REUSED);
+        return entity;
+    }
+
+    /**
+     * Note how far the handing out of ids has got, so that idSinceMark
+     * can tell which ids the allocations from here on are given.
+     */
+    public synchronized void markIds()
+    {
+        markedFreeCount = freeCount;
+        markedNextId = nextId;
+    }
+
+    /**
+     * Work out the id that the n-th allocation since markIds gets when
+     * the allocations are made one after another. Threads allocating
+     * at once get the same ids between them, in whatever order they
+     * are scheduled. No id may have been released since markIds.
+     * @param n The number of allocations before it, from 0.
+     * @return Its id.
+     */
+    public synchronized int idSinceMark(int n)
+    {
+        return n < markedFreeCount ? freeIds[markedFreeCount - 1 - n] : markedNextId + n - markedFreeCount;
+    }
+
+    /**
+     * Exchange two ids: everything stored under each, its object
+     * included, is moved to the other. The field's grid and the
+     * objects themselves still refer to the old ids (see Field.swapIds).
+     * @param a An id.
+     * @param b Another id.
+     */
+    public void swap(int a, int b)
+    {
+        int pageA = a >>> PAGE_BITS, slotA = a & PAGE_MASK;
+        int pageB = b >>> PAGE_BITS, slotB = b & PAGE_MASK;
+        Object entity = entities[pageA][slotA];
+        entities[pageA][slotA] = entities[pageB][slotB];
+        entities[pageB][slotB] = entity;
+        byte kind = species[pageA][slotA];
+        species[pageA][slotA] = species[pageB][slotB];
+        species[pageB][slotB] = kind;
+        int where = cell[pageA][slotA];
+        cell[pageA][slotA] = cell[pageB][slotB];
+        cell[pageB][slotB] = where;
+        int born = birthStep[pageA][slotA];
+        birthStep[pageA][slotA] = birthStep[pageB][slotB];
+        birthStep[pageB][slotB] = born;
+        int food = foodLevel[pageA][slotA];
+        foodLevel[pageA][slotA] = foodLevel[pageB][slotB];
+        foodLevel[pageB][slotB] = food;
+        boolean isMale = male[pageA][slotA];
+        male[pageA][slotA] = male[pageB][slotB];
+        male[pageB][slotB] = isMale;
+        long state = random[pageA][slotA];
+        random[pageA][slotA] = random[pageB][slotB];
+        random[pageB][slotB] = state;
+        long died = fate[pageA][slotA];
+        fate[pageA][slotA] = fate[pageB][slotB];
+        fate[pageB][slotB] = died;
+    }
+
+    /**
+     * @return The number of ids currently in use.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the animal or plant object with the given id.
+     * @param id An entity id, or NONE.
+     * @return The entity, or null for NONE.
+     */
+    public Object getEntity(int id)
+    {
+        return entities[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * Attach an object to an id that is already in use, such as when
+     * the entities are recreated from a checkpoint.
+     * @param id An entity id.
+     * @param entity The animal or plant object the id belongs to.
+     */
+    public void setEntity(int id, Object entity)
+    {
+        entities[id >>> PAGE_BITS][id & PAGE_MASK] = entity;
+    }
+
+    /**
+     * @param id An entity id.
+     * @return The entity's species.
+     */
+    public Species getSpecies(int id)
+    {
+        return Species.fromOrdinal(species[id >>> PAGE_BITS][id & PAGE_MASK]);
+    }
+
+    /**
+     * @param id An entity id.
+     * @return The cell the entity occupies, or NO_CELL.
+     */
+    public int getCell(int id)
+    {
+        return cell[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * Record the cell an entity occupies. An entity entering the field
+     * or leaving it changes the count of its species.
+     * @param id An entity id.
+     * @param newCell The cell the entity now occupies, or NO_CELL.
+     */
+    public void setCell(int id, int newCell)
+    {
+        int[] page = cell[id >>> PAGE_BITS];
+        int oldCell = page[id & PAGE_MASK];
+        page[id & PAGE_MASK] = newCell;
+        if(oldCell == NO_CELL && newCell != NO_CELL) {
+            population.incrementAndGet(species[id >>> PAGE_BITS][id & PAGE_MASK] * COUNT_STRIDE);
+        }
+        else if(oldCell != NO_CELL && newCell == NO_CELL) {
+            population.decrementAndGet(species[id >>> PAGE_BITS][id & PAGE_MASK] * COUNT_STRIDE);
+        }
+    }
+
+    /**
+     * Return the number of entities of a species in the field.
+     * @param kind The species.
+     * @return The number of entities of that species occupying a cell.
+     */
+    public int count(Species kind)
+    {
+        return population.get(kind.ordinal() * COUNT_STRIDE);
+    }
+
+    /**
+     * @param id An entity id.
+     * @return The step the entity was born in; its age is the
+     *         current step less this.
+     */
+    public int getBirthStep(int id)
+    {
+        return birthStep[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * @param id An entity id.
+     * @param step The step the entity was born in.
+     */
+    public void setBirthStep(int id, int step)
+    {
+        birthStep[id >>> PAGE_BITS][id & PAGE_MASK] = step;
+    }
+
+    /**
+     * @param id An entity id.
+     * @return The entity's food level.
+     */
+    public int getFoodLevel(int id)
+    {
+        return foodLevel[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * @param id An entity id.
+     * @param level The entity's new food level.
+     */
+    public void setFoodLevel(int id, int level)
+    {
+        foodLevel[id >>> PAGE_BITS][id & PAGE_MASK] = level;
+    }
+
+    /**
+     * @param id An entity id.
+     * @return true if the entity is male.
+     */
+    public boolean isMale(int id)
+    {
+        return male[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * @param id An entity id.
+     * @param isMale Whether the entity is male.
+     */
+    public void setMale(int id, boolean isMale)
+    {
+        male[id >>> PAGE_BITS][id & PAGE_MASK] = isMale;
+    }
+
+    /**
+     * Draw the next 64 random bits from an entity's stream.
+     * @param id An entity id.
+     * @return 64 random bits.
+     */
+    public long nextRandom(int id)
+    {
+        long[] page = random[id >>> PAGE_BITS];
+        long state = Randomizer.advance(page[id & PAGE_MASK]);
+        page[id & PAGE_MASK] = state;
+        return Randomizer.mix(state);
+    }
+
+    /**
+     * @param id An entity id.
+     * @return The state of the entity's random stream.
+     */
+    public long getRandomState(int id)
+    {
+        return random[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * @param id An entity id.
+     * @param state The new state of the entity's random stream.
+     */
+    public void setRandomState(int id, long state)
+    {
+        random[id >>> PAGE_BITS][id & PAGE_MASK] = state;
+    }
+
+    /**
+     * @param id An entity id.
+     * @return How the entity died, as set by setFate, or 0.
+     */
+    public int getFate(int id)
+    {
+        return (int) fate[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * @param id An entity id.
+     * @return The cell the entity died in, as set by setFate.
+     */
+    public int getDeathCell(int id)
+    {
+        return (int) (fate[id >>> PAGE_BITS][id & PAGE_MASK] >> 32);
+    }
+
+    /**
+     * Record how and where an entity died, for the simulation to
+     * report once the step is over (see EventRing). It is not written
+     * to checkpoints, which are only taken once every death has been
+     * reported.
+     * @param id An entity id.
+     * @param value How the entity died, or 0 once it has been reported.
+     * @param deathCell The cell it died in, or NO_CELL.
+     */
+    public void setFate(int id, int value, int deathCell)
+    {
+        fate[id >>> PAGE_BITS][id & PAGE_MASK] = (long) deathCell << 32 | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Count an entity as eaten by another.
+     * This may be called from several threads at once.
+     * @param id The id of the entity that was eaten.
+     */
+    public void recordPredation(int id)
+    {
+        events.incrementAndGet(species[id >>> PAGE_BITS][id & PAGE_MASK] * EVENT_STRIDE + EATEN);
+    }
+
+    /**
+     * @param kind A species.
+     * @return The number of entities of the species handed an id since
+     *         the store was last cleared.
+     */
+    public long getBirths(Species kind)
+    {
+        return events.get(kind.ordinal() * EVENT_STRIDE + BORN);
+    }
+
+    /**
+     * @param kind A species.
+     * @return The number of ids of the species released since the
+     *         store was last cleared.
+     */
+    public long getDeaths(Species kind)
+    {
+        return events.get(kind.ordinal() * EVENT_STRIDE + DIED);
+    }
+
+    /**
+     * @param kind A species.
+     * @return The number of entities of the species eaten since the
+     *         store was last cleared.
+     */
+    public long getPredations(Species kind)
+    {
+        return events.get(kind.ordinal() * EVENT_STRIDE + EATEN);
+    }
+
+    /**
+     * @param kind A species.
+     * @return The number of births of the species that reused the
+     *         object of a dead entity instead of allocating one.
+     */
+    public long getReused(Species kind)
+    {
+        return events.get(kind.ordinal() * EVENT_STRIDE + REUSED);
+    }
+
+    /**
+     * @return The number of bytes writeTo writes.
+     */
+    public synchronized long checkpointSize()
+    {
+        // nextId, freeCount, the free ids, and per id: species, cell,
+        // birth step, food level, sex and random state.
+        return 8L + 4L * freeCount + (long) nextId * (1 + 4 + 4 + 4 + 1 + 8);
+    }
+
+    /**
+     * Write every id's columns to a buffer, a column at a time, and
+     * the ids that are free. The entity objects are not written.
+     * @param out The buffer to write to.
+     */
+    public synchronized void writeTo(ByteBuffer out)
+    {
+        out.putInt(nextId);
+        out.putInt(freeCount);
+        putInts(out, freeIds, freeCount);
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            out.put(species[page], 0, pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            putInts(out, cell[page], pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            putInts(out, birthStep[page], pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            putInts(out, foodLevel[page], pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            boolean[] column = male[page];
+            for(int slot = 0; slot < pageLength(page); slot++) {
+                out.put(column[slot] ? (byte) 1 : (byte) 0);
+            }
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            int length = pageLength(page);
+            out.asLongBuffer().put(random[page], 0, length);
+            out.position(out.position() + 8 * length);
+        }
+    }
+
+    /**
+     * Replace the contents of the store with what writeTo wrote.
+     * The entity objects must be attached afterwards with setEntity.
+     * @param in The buffer to read from.
+     */
+    public synchronized void readFrom(ByteBuffer in)
+    {
+        clear();
+        nextId = in.getInt();
+        freeCount = in.getInt();
+        while(pages * PAGE_SIZE < Math.max(nextId, freeCount)) {
+            addPage();
+        }
+        getInts(in, freeIds, freeCount);
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            in.get(species[page], 0, pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            getInts(in, cell[page], pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            getInts(in, birthStep[page], pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            getInts(in, foodLevel[page], pageLength(page));
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            boolean[] column = male[page];
+            for(int slot = 0; slot < pageLength(page); slot++) {
+                column[slot] = in.get() != 0;
+            }
+        }
+        for(int page = 0; page * PAGE_SIZE < nextId; page++) {
+            int length = pageLength(page);
+            in.asLongBuffer().get(random[page], 0, length);
+            in.position(in.position() + 8 * length);
+        }
+        size = nextId - 1 - freeCount;
+        for(int id = NONE + 1; id < nextId; id++) {
+            if(getCell(id) != NO_CELL) {
+                population.incrementAndGet(species[id >>> PAGE_BITS][id & PAGE_MASK] * COUNT_STRIDE);
+            }
+        }
+    }
+
+    /**
+     * @return One more than the highest id that has been handed out.
+     */
+    public synchronized int idLimit()
+    {
+        return nextId;
+    }
+
+    /**
+     * @return The number of ids of a page below nextId.
+     */
+    private int pageLength(int page)
+    {
+        return Math.min(PAGE_SIZE, nextId - page * PAGE_SIZE);
+    }
+
+    /**
+     * Copy ints into a buffer and move its position past them.
+     */
+    private static void putInts(ByteBuffer out, int[] values, int length)
+    {
+        out.asIntBuffer().put(values, 0, length);
+        out.position(out.position() + 4 * length);
+    }
+
+    /**
+     * Copy ints out of a buffer and move its position past them.
+     */
+    private static void getInts(ByteBuffer in, int[] values, int length)
+    {
+        in.asIntBuffer().get(values, 0, length);
+        in.position(in.position() + 4 * length);
+    }
+
+    /**
+     * Add one page to every column. Only the page tables are copied;
+     * the existing pages are shared with the old tables. Each table is
+     * stored once it is complete.
+     */
+    private void addPage()
+    {
+        int page = pages;
+        entities = withPage(entities, new Object[PAGE_SIZE]);
+        species = withPage(species, new byte[PAGE_SIZE]);
+        cell = withPage(cell, new int[PAGE_SIZE]);
+        birthStep = withPage(birthStep, new int[PAGE_SIZE]);
+        foodLevel = withPage(foodLevel, new int[PAGE_SIZE]);
+        male = withPage(male, new boolean[PAGE_SIZE]);
+        random = withPage(random, new long[PAGE_SIZE]);
+        fate = withPage(fate, new long[PAGE_SIZE]);
+        if(freeIds.length < (page + 1) * PAGE_SIZE) {
+            // Grow by half again, so that adding pages one at a time
+            // does not copy the free ids every time.
+            freeIds = Arrays.copyOf(freeIds, Math.max((page + 1) * PAGE_SIZE,
+                                                      freeIds.length + (freeIds.length >> 1)));
+        }
+        pages = page + 1;
+    }
+
+    /**
+     * @param table A table of pages.
+     * @param page A new page.
+     * @return A copy of the table with the page added at the end.
+     */
+    private static <T> T[] withPage(T[] table, T page)
+    {
+        T[] grown = Arrays.copyOf(table, table.length + 1);
+        grown[table.length] = page;
+        return grown;
+    }
+}
@@ -0,0 +1,159 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The time of day and the weather, shared by the whole simulation.
+ * The simulation advances the environment once at the start of every
+ * step, and the animals and plants read the flags it works out then,
+ * so every entity sees the same state for the whole step, whichever
+ * thread it runs on.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class Environment
+{
+    // The light on a clear day, a cloudy day and at night, from 0 to 1.
+    private static final double DAY_LIGHT = 1.0;
+    private static final double CLOUDY_DAY_LIGHT = 0.6;
+    private static final double NIGHT_LIGHT = 0.1;
+
+    // The clock that decides between day and night.
+    private DayNight dayNight;
+
+    // The weather.
+    private Weather weather;
+
+    // The state of the environment during the current step.
+    private boolean isDay;
+    private boolean isCloudy;
+    private double lightLevel;
+
+    /**
+     * Create the environment of a run, at step 0.
+     * @param seed The seed the weather is drawn from.
+     */
+    public Environment(long seed)
+    {
+        dayNight = new DayNight();
+        weather = new Weather(seed);
+        advance(0);
+    }
+
+    /**
+     * Move the clock and the weather on to the given step and work
+     * out the state the animals and plants see during it.
+     * @param step The step about to be simulated.
+     */
+    public void advance(int step)
+    {
+        dayNight.computeStep(step);
+        weather.computeStep(step, dayNight.isDay());
+        update();
+    }
+
+    /**
+     * Write the state of the clock and the weather to a buffer.
+     * @param out The buffer to write to.
+     */
+    public void writeTo(ByteBuffer out)
+    {
+        out.put(dayNight.isManual() ? (byte) 1 : (byte) 0);
+        out.put(dayNight.isDay() ? (byte) 1 : (byte) 0);
+        out.put(weather.isManual() ? (byte) 1 : (byte) 0);
+        out.put(weather.isCloudy() ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Restore the state writeTo wrote.
+     * @param in The buffer to read from.
+     */
+    public void readFrom(ByteBuffer in)
+    {
+        boolean manualTime = in.get() != 0;
+        boolean day = in.get() != 0;
+        boolean manualWeather = in.get() != 0;
+        boolean cloudy = in.get() != 0;
+        if(day) {
+            dayNight.day();
+        }
+        else {
+            dayNight.night();
+        }
+        if(!manualTime) {
+            dayNight.auto();
+        }
+        if(cloudy) {
+            weather.cloudy();
+        }
+        else {
+            weather.clear();
+        }
+        if(!manualWeather) {
+            weather.auto();
+        }
+        update();
+    }
+
+    /**
+     * Work out the flags of the current step from the clock and the
+     * weather.
+     */
+    private void update()
+    {
+        isDay = dayNight.isDay();
+        isCloudy = weather.isCloudy();
+        if(!isDay) {
+            lightLevel = NIGHT_LIGHT;
+        }
+        else if(isCloudy) {
+            lightLevel = CLOUDY_DAY_LIGHT;
+        }
+        else {
+            lightLevel = DAY_LIGHT;
+        }
+    }
+
+    /**
+     * @return true if it is day during the current step.
+     */
+    public boolean isDay()
+    {
+        return isDay;
+    }
+
+    /**
+     * @return true if it is cloudy during the current step.
+     */
+    public boolean isCloudy()
+    {
+        return isCloudy;
+    }
+
+    /**
+     * @return How light it is during the current step, from 0 to 1.
+     */
+    public double getLightLevel()
+    {
+        return lightLevel;
+    }
+
+    /**
+     * Return the clock, for example to switch it to day by hand.
+     * A change shows from the next step on.
+     * @return The clock.
+     */
+    public DayNight getDayNight()
+    {
+        return dayNight;
+    }
+
+    /**
+     * Return the weather, for example to make it cloudy by hand.
+     * A change shows from the next step on.
+     * @return The weather.
+     */
+    public Weather getWeather()
+    {
+        return weather;
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Record every birth and death of a simulation to a CSV file, one line
+ * per event: the step, the event, the species, the entity's id and
+ * cell, and the predator for a death by predation.
+ *
+ * The recorder subscribes to the simulation's EventRing and reads it
+ * on a thread of its own, so the simulation never waits for the disk.
+ * If the recorder falls a whole ring behind, the events it missed are
+ * counted instead.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class EventRecorder implements EventRing.Handler
+{
+    // How long the writer sleeps when there is nothing to write.
+    private static final long IDLE_NANOS = 1000000;
+
+    // The place of the recorder in the ring.
+    private final EventRing.Subscription subscription;
+
+    // The file written to.
+    private final BufferedWriter out;
+
+    // Reads the ring and writes the events.
+    private final Thread writer;
+
+    // Whether close has been called.
+    private volatile boolean closed;
+
+    // What went wrong in the writer, if anything.
+    private volatile IOException failure;
+
+    /**
+     * Create a recorder of the events published from now on, and start
+     * its writer.
+     * @param events The ring the events are published to.
+     * @param fileName The file to write.
+     * @throws IOException If the file cannot be created.
+     */
+    public EventRecorder(EventRing events, String fileName) throws IOException
+    {
+        out = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.US_ASCII);
+        out.write("step,event,species,id,cell,predator\n");
+        subscription = events.subscribe();
+        writer = new Thread(this::drain, "event-recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Write one event.
+     * @param type What happened.
+     * @param step The step it happened in.
+     * @param id The id of the animal or plant it happened to.
+     * @param species The species of the animal or plant.
+     * @param cell Where it was born or died.
+     * @param predator For PREDATION, the species that ate it; or null.
+     */
+    public void onEvent(EventRing.Type type, int step, int id, Species species, int cell, Species predator)
+    {
+        try {
+            out.write(Integer.toString(step));
+            out.write(',');
+            out.write(type.name());
+            out.write(',');
+            out.write(species.getName());
+            out.write(',');
+            out.write(Integer.toString(id));
+            out.write(',');
+            out.write(Integer.toString(cell));
+            out.write(',');
+            if(predator != null) {
+                out.write(predator.getName());
+            }
+            out.write('\n');
+        }
+        catch(IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * @return The number of events missed because the recorder fell a
+     *         whole ring behind. Only exact once the recorder is closed.
+     */
+    public long getDropped()
+    {
+        return subscription.getDropped();
+    }
+
+    /**
+     * Write the events published so far and close the file.
+     * This must be called between steps.
+     * @throws IOException If an event could not be written.
+     */
+    public void close() throws IOException
+    {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The writer's loop: write events as they come, until closed.
+     */
+    private void drain()
+    {
+        while(failure == null) {
+            boolean finishing = closed;
+            if(subscription.poll(this) == 0) {
+                if(finishing) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+}
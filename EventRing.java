@@ -0,0 +1,261 @@
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ring of the births and deaths of a simulation, for anything that
+ * wants to follow them: statistics, recordings, the display or an
+ * exporter.
+ *
+ * The simulation thread is the only one that publishes, and does so
+ * once a step is over (see Simulator). Every event goes into a slot
+ * of preallocated columns, so publishing allocates nothing, and the
+ * publisher never waits: a subscriber that falls more than a ring's
+ * length behind loses the oldest events it has not read, and counts
+ * them. Any number of subscribers, on any threads, each read at their
+ * own pace through a Subscription.
+ *
+ * A slot is written after the sequence number it is claimed for is
+ * made visible, and read before that is checked, so a subscriber can
+ * tell whether the slot it read was overwritten while it read it.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class EventRing
+{
+    /**
+     * What happened to an animal or plant.
+     */
+    public enum Type
+    {
+        BIRTH, OLD_AGE, STARVATION, OVERCROWDING, PREDATION
+    }
+
+    /**
+     * Receives the events a subscriber reads.
+     */
+    public interface Handler
+    {
+        /**
+         * Handle one event.
+         * @param type What happened.
+         * @param step The step it happened in.
+         * @param id The id of the animal or plant it happened to. Ids
+         *           are reused, so this only tells entities apart while
+         *           they live.
+         * @param species The species of the animal or plant.
+         * @param cell Where it was born or died.
+         * @param predator For PREDATION, the species that ate it;
+         *                 otherwise null.
+         */
+        void onEvent(Type type, int step, int id, Species species, int cell, Species predator);
+    }
+
+    // The number of events the ring holds unless told otherwise.
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // The types of event, by ordinal, so that reading one allocates
+    // nothing.
+    private static final Type[] TYPES = Type.values();
+
+    // The columns of the slots: the type ordinal, the predator ordinal
+    // plus one or 0, and the species ordinal of each event, then its
+    // step, entity id and cell.
+    private final byte[] types;
+    private final byte[] predators;
+    private final byte[] species;
+    private final int[] steps;
+    private final int[] ids;
+    private final int[] cells;
+
+    // The number of slots less one; the number of slots is a power of two.
+    private final int mask;
+
+    // The sequence number of the latest event being written or written.
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    // The number of events ever published.
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * Create a ring of the default size.
+     */
+    public EventRing()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a ring.
+     * @param capacity The number of events the ring holds, rounded up
+     *                 to a power of two.
+     */
+    public EventRing(int capacity)
+    {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("The ring must hold at least one event: " + capacity);
+        }
+        int slots = Integer.highestOneBit(capacity - 1) << 1;
+        slots = Math.max(slots, 1);
+        mask = slots - 1;
+        types = new byte[slots];
+        predators = new byte[slots];
+        species = new byte[slots];
+        steps = new int[slots];
+        ids = new int[slots];
+        cells = new int[slots];
+    }
+
+    /**
+     * @return The number of events the ring holds.
+     */
+    public int getCapacity()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * @return The number of events ever published.
+     */
+    public long getPublished()
+    {
+        return published.get();
+    }
+
+    /**
+     * Publish an event. Only the simulation thread may call this.
+     * @param type What happened.
+     * @param step The step it happened in.
+     * @param id The id of the animal or plant it happened to.
+     * @param kind The species of the animal or plant.
+     * @param cell Where it was born or died.
+     * @param predator For PREDATION, the species that ate it, if it is
+     *                 known; otherwise null.
+     */
+    public void publish(Type type, int step, int id, Species kind, int cell, Species predator)
+    {
+        long sequence = published.get();
+        claimed.set(sequence);
+        // The slot must not be written before the claim can be seen.
+        VarHandle.storeStoreFence();
+        int slot = (int) sequence & mask;
+        types[slot] = (byte) type.ordinal();
+        predators[slot] = (byte) (predator == null ? 0 : predator.ordinal() + 1);
+        species[slot] = (byte) kind.ordinal();
+        steps[slot] = step;
+        ids[slot] = id;
+        cells[slot] = cell;
+        published.lazySet(sequence + 1);
+    }
+
+    /**
+     * Work out how to record a death in an entity's fate column (see
+     * EntityStore.setFate).
+     * @param cause How the entity died.
+     * @param predator For PREDATION, the species that ate it; or null.
+     * @return The value to record; never 0.
+     */
+    public static int fate(Type cause, Species predator)
+    {
+        return cause.ordinal() | (predator == null ? 0 : predator.ordinal() + 1) << 3;
+    }
+
+    /**
+     * @param fate A value made by fate, not 0.
+     * @return How the entity died.
+     */
+    public static Type causeOf(int fate)
+    {
+        return TYPES[fate & 7];
+    }
+
+    /**
+     * @param fate A value made by fate, not 0.
+     * @return The species that ate the entity, or null.
+     */
+    public static Species predatorOf(int fate)
+    {
+        return fate >>> 3 == 0 ? null : Species.fromOrdinal((fate >>> 3) - 1);
+    }
+
+    /**
+     * Follow the events published from now on.
+     * @return A subscription to read them through.
+     */
+    public Subscription subscribe()
+    {
+        return new Subscription(published.get());
+    }
+
+    /**
+     * One subscriber's place in the ring. A subscription must only be
+     * read from one thread at a time.
+     */
+    public class Subscription
+    {
+        // The sequence number of the next event to read.
+        private long next;
+
+        // The number of events lost because the ring overtook them.
+        private long dropped;
+
+        /**
+         * @param next The sequence number of the first event to read.
+         */
+        private Subscription(long next)
+        {
+            this.next = next;
+        }
+
+        /**
+         * Hand every event published since the last poll to a handler,
+         * oldest first, and skip those that have been overwritten.
+         * @param handler Receives the events.
+         * @return The number of events handed over.
+         */
+        public int poll(Handler handler)
+        {
+            int count = 0;
+            long available = published.get();
+            while(next < available) {
+                int slot = (int) next & mask;
+                Type type = TYPES[types[slot]];
+                int predator = predators[slot];
+                int kind = species[slot];
+                int step = steps[slot];
+                int id = ids[slot];
+                int cell = cells[slot];
+                // The claim must be read after the slot.
+                VarHandle.loadLoadFence();
+                long oldest = claimed.get() - mask;
+                if(next < oldest) {
+                    dropped += oldest - next;
+                    next = oldest;
+                    continue;
+                }
+                handler.onEvent(type, step, id, Species.fromOrdinal(kind), cell,
+                                predator == 0 ? null : Species.fromOrdinal(predator - 1));
+                next++;
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * @return The number of events published but not yet read.
+         */
+        public long getBacklog()
+        {
+            return published.get() - next;
+        }
+
+        /**
+         * @return The number of events this subscriber lost because it
+         *         fell more than a ring's length behind.
+         */
+        public long getDropped()
+        {
+            return dropped;
+        }
+    }
+}
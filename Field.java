@@ -1,12 +1,29 @@
-import java.util.Collections;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal.
+ * The grid holds entity ids; the state of the animals and plants
+ * themselves is kept in the field's EntityStore.
+ * The field also remembers which cells have changed since a view last
+ * looked, so that only those need to be drawn again.
+ * Next to the grid it keeps one bitboard per species, and one for all
+ * occupied cells, with a bit per cell. Questions such as "which of my
+ * neighbours are free" or "which hold prey" are answered from three
+ * rows of bits as an 8-bit mask, without looking at any entity.
+ * In a synchronous step the grid stays as it was at the start of the
+ * step while the acts run, and what they change is claimed in a
+ * NextGrid instead, to be settled once all have acted.
+ * A concurrent field (see setConcurrent) claims its cells with CAS
+ * instead, so that entities can be placed and moved from several
+ * threads at once without ever landing on one another.
  * 
  * @author David J. Barnes and Michael Kölling
  * @author Amirali Koochaki . Marouane el Moubarik alaoui .Seyed Mohammad Reza Shahrestani
@@ -14,13 +31,56 @@ import java.util.Random;
  */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // The most cells that can be adjacent to a location.
+    public static final int MAX_ADJACENT = 8;
+
+    // Row and column offsets of the eight neighbours of a cell,
+    // going clockwise from the top left corner.
+    private static final int[] ROW_OFFSETS = { -1, -1, -1, 0, 1, 1, 1, 0 };
+    private static final int[] COL_OFFSETS = { -1, 0, 1, 1, 1, 0, -1, -1 };
+
+    // Atomic access to the cells of the grid, for a concurrent field.
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(int[].class);
 
     // The depth and width of the field.
     private int depth, width;
-    // Storage for the animals.
-    private Object[][] field;
+    // The id of the animal in each cell, one row after another.
+    // Empty cells hold EntityStore.NONE.
+    private int[] field;
+    // The state of every animal and plant in the field.
+    private EntityStore entities;
+    // The one Location object for each cell, indexed like field.
+    private Location[] locations;
+    // The seed the random streams of the field's entities derive from.
+    private long seed;
+    // The step being simulated.
+    private int step;
+    // The time of day and the weather.
+    private Environment environment;
+    // The rules the field's species live by.
+    private SpeciesRules rules;
+    // One bit per cell, set when the cell's occupant changes. Cells
+    // sharing a word may belong to different threads' tiles, so the
+    // words are updated atomically.
+    private AtomicLongArray dirty;
+    // Whether every cell is to be taken as changed, as after the field
+    // was cleared or restored, whatever the dirty bits say.
+    private boolean allDirty;
+    // For each species, one bit per cell, set while an entity of the
+    // species stands in the cell; and the same for any entity. Like
+    // dirty, the words are shared between tiles.
+    private AtomicLongArray[] occupants;
+    private AtomicLongArray occupied;
+    // The claims of a synchronous step, made once one is first run.
+    private NextGrid next;
+    // Whether the acts of a synchronous step are running, so that
+    // changes are claimed rather than made.
+    private boolean synchronous;
+    // Whether cells are claimed with CAS, and the cell of the entity
+    // acting on each thread, around which its young look for room.
+    private boolean concurrent;
+    private final ThreadLocal<int[]> actorCell =
+        ThreadLocal.withInitial(() -> new int[] { EntityStore.NO_CELL });
 
     /**
      * Represent a field of the given dimensions.
@@ -28,22 +88,121 @@ public class Field
      * @param width The width of the field.
      */
     public Field(int depth, int width)
+    {
+        this(depth, width, Randomizer.getSeed());
+    }
+
+    /**
+     * Represent a field of the given dimensions whose entities draw
+     * their random numbers from streams derived from the given seed.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param seed The seed of the run.
+     */
+    public Field(int depth, int width, long seed)
+    {
+        this(depth, width, seed, SpeciesRules.getDefault());
+    }
+
+    /**
+     * Represent a field of the given dimensions whose entities draw
+     * their random numbers from streams derived from the given seed
+     * and live by the given rules.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param seed The seed of the run.
+     * @param rules The rules the species live by.
+     */
+    public Field(int depth, int width, long seed, SpeciesRules rules)
     {
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
+        this.seed = seed;
+        this.rules = rules;
+        environment = new Environment(seed);
+        field = new int[depth * width];
+        dirty = new AtomicLongArray((depth * width + 63) >>> 6);
+        occupied = new AtomicLongArray(dirty.length());
+        occupants = new AtomicLongArray[Species.count()];
+        for(int kind = 0; kind < occupants.length; kind++) {
+            occupants[kind] = new AtomicLongArray(dirty.length());
+        }
+        entities = new EntityStore();
+        locations = new Location[depth * width];
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                locations[cellOf(row, col)] = new Location(row, col, width);
+            }
+        }
     }
 
     /**
-     * Empty the field.
+     * Empty the field. Every entity id is released as well.
      */
     public void clear()
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
+        Arrays.fill(field, EntityStore.NONE);
+        entities.clear();
+        for(int word = 0; word < occupied.length(); word++) {
+            occupied.set(word, 0);
+            for(AtomicLongArray board : occupants) {
+                board.set(word, 0);
+            }
+        }
+        markAllDirty();
+    }
+
+    /**
+     * @return The number of bytes writeTo writes.
+     */
+    public long checkpointSize()
+    {
+        return 4 + 4 + 8 + 4 + 4 + rules.checkpointSize() + entities.checkpointSize();
+    }
+
+    /**
+     * Write the field's size, seed and step, the environment, the
+     * species rules and the entity store to a buffer. The grid itself
+     * is not written, as the store knows the cell of every entity.
+     * @param out The buffer to write to.
+     */
+    public void writeTo(ByteBuffer out)
+    {
+        out.putInt(depth);
+        out.putInt(width);
+        out.putLong(seed);
+        out.putInt(step);
+        environment.writeTo(out);
+        rules.writeTo(out);
+        entities.writeTo(out);
+    }
+
+    /**
+     * Create a field from what writeTo wrote. The entity objects
+     * still have to be attached to their ids in the store.
+     * @param in The buffer to read from.
+     * @return The field.
+     */
+    public static Field readFrom(ByteBuffer in)
+    {
+        int depth = in.getInt();
+        int width = in.getInt();
+        long seed = in.getLong();
+        Field restored = new Field(depth, width, seed);
+        restored.step = in.getInt();
+        restored.environment.readFrom(in);
+        restored.rules = SpeciesRules.readFrom(in);
+        EntityStore entities = restored.entities;
+        entities.readFrom(in);
+        for(int id = EntityStore.NONE + 1; id < entities.idLimit(); id++) {
+            int cell = entities.getCell(id);
+            if(cell != EntityStore.NO_CELL) {
+                restored.field[cell] = id;
+                restored.setOccupant(cell, entities.getSpecies(id), true);
             }
         }
+        restored.markAllDirty();
+        return restored;
     }
 
     /**
@@ -52,32 +211,466 @@ public class Field
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        int cell = cellOf(location.getRow(), location.getCol());
+        int id = field[cell];
+        if(synchronous) {
+            if(id != EntityStore.NONE) {
+                next.vacate(id, cell);
+            }
+            return;
+        }
+        if(concurrent) {
+            release(cell);
+            return;
+        }
+        if(id != EntityStore.NONE) {
+            field[cell] = EntityStore.NONE;
+            setOccupant(cell, entities.getSpecies(id), false);
+        }
+        markDirty(cell);
     }
 
     /**
      * Place an animal at the given location.
      * If there is already an animal at the location it will
      * be lost.
-     * @param animal The animal to be placed.
+     * @param id The id of the animal to be placed.
      * @param row Row coordinate of the location.
      * @param col Column coordinate of the location.
      */
-    public void place(Object animal, int row, int col)
+    public void place(int id, int row, int col)
     {
-        place(animal, new Location(row, col));
+        place(id, locationAt(row, col));
     }
 
     /**
      * Place an animal at the given location.
      * If there is already an animal at the location it will
      * be lost.
-     * @param animal The animal to be placed.
+     * @param id The id of the animal to be placed.
      * @param location Where to place the animal.
      */
-    public void place(Object animal, Location location)
+    public void place(int id, Location location)
+    {
+        int cell = cellOf(location.getRow(), location.getCol());
+        if(synchronous) {
+            // A newborn knows its cell at once, though it only enters
+            // the grid if its claim wins.
+            if(entities.getCell(id) == EntityStore.NO_CELL) {
+                entities.setCell(id, cell);
+            }
+            next.place(id, cell);
+            return;
+        }
+        if(concurrent) {
+            placeConcurrently(id, location);
+            return;
+        }
+        int lost = field[cell];
+        if(lost != EntityStore.NONE) {
+            setOccupant(cell, entities.getSpecies(lost), false);
+        }
+        field[cell] = id;
+        entities.setCell(id, cell);
+        setOccupant(cell, entities.getSpecies(id), true);
+        markDirty(cell);
+    }
+
+    /**
+     * Move an animal from one location to another.
+     * This does what clear and place would, but when the two cells
+     * share a word of the bitboards, each word is updated only once.
+     * @param id The id of the animal to be moved.
+     * @param from Where the animal stands.
+     * @param to Where the animal goes.
+     */
+    public void move(int id, Location from, Location to)
+    {
+        int fromCell = cellOf(from.getRow(), from.getCol());
+        int toCell = cellOf(to.getRow(), to.getCol());
+        if(synchronous) {
+            next.move(id, toCell);
+            return;
+        }
+        if(concurrent) {
+            moveConcurrently(id, from, to);
+            return;
+        }
+        if((fromCell >>> 6) != (toCell >>> 6) || field[toCell] != EntityStore.NONE) {
+            clear(from);
+            place(id, to);
+            return;
+        }
+        field[fromCell] = EntityStore.NONE;
+        field[toCell] = id;
+        entities.setCell(id, toCell);
+        long fromBit = 1L << (fromCell & 63);
+        long toBit = 1L << (toCell & 63);
+        int word = fromCell >>> 6;
+        changeBits(occupants[entities.getSpecies(id).ordinal()], word, fromBit, toBit);
+        changeBits(occupied, word, fromBit, toBit);
+        changeBits(dirty, word, 0, fromBit | toBit);
+    }
+
+    /**
+     * Start the acts of a synchronous step. Until resolveSynchronousActs
+     * is called, the grid stays as it is: place, move and clear, and
+     * claimPrey, only claim the changes they would make, and every
+     * question about the field is answered as at the start of the step.
+     * Each act must be announced with startAct.
+     */
+    public void startSynchronousActs()
+    {
+        if(next == null) {
+            next = new NextGrid(this);
+        }
+        next.clear();
+        synchronous = true;
+    }
+
+    /**
+     * Announce the act of an entity in a synchronous step, or in a
+     * concurrent field, on the thread it runs on.
+     * @param id The entity about to act.
+     */
+    public void startAct(int id)
+    {
+        if(synchronous) {
+            next.startAct(entities.getCell(id));
+        }
+        else if(concurrent) {
+            actorCell.get()[0] = entities.getCell(id);
+        }
+    }
+
+    /**
+     * Claim a prey's cell for a predator in a synchronous step. If the
+     * claim wins, the prey is eaten, the predator gets the food and
+     * moves into the cell (see NextGrid).
+     * @param id The predator.
+     * @param where The prey's location.
+     * @param food The predator's food level after the meal.
+     */
+    public void claimPrey(int id, Location where, int food)
+    {
+        next.eat(id, cellOf(where.getRow(), where.getCol()), food);
+    }
+
+    /**
+     * Finish the acts of a synchronous step: settle the claims made
+     * since startSynchronousActs and bring the grid up to date.
+     * @param stepper The stepper whose threads settle the claims, or
+     *                null to settle them on this thread.
+     */
+    public void resolveSynchronousActs(ParallelStepper stepper)
+    {
+        synchronous = false;
+        next.resolve(stepper);
+    }
+
+    /**
+     * @return true while the acts of a synchronous step are running.
+     */
+    public boolean isSynchronous()
+    {
+        return synchronous;
+    }
+
+    /**
+     * Choose whether the cells of the field are claimed with CAS, so
+     * that entities can be placed, moved and cleared from several
+     * threads at once. Two entities then never land in one cell: place
+     * and move only take a cell that is still free, and if another
+     * thread got there first they try the next free neighbour of the
+     * entity acting (see startAct) or of the mover. A mover that finds
+     * no free neighbour left stays where it is, and a newborn dies of
+     * overcrowding. Only the grid is guarded this way; predation still
+     * needs the tiles of ParallelStepper or a synchronous step. This
+     * must be called while nothing else uses the field.
+     * @param concurrent true to claim cells with CAS.
+     */
+    public void setConcurrent(boolean concurrent)
+    {
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * @return true if the cells of the field are claimed with CAS.
+     */
+    public boolean isConcurrent()
+    {
+        return concurrent;
+    }
+
+    /**
+     * Claim a cell for an entity that is not in the grid, if the cell is
+     * free, atomically. Any thread may call this at any time.
+     * @param id The entity.
+     * @param location The cell wanted.
+     * @return true if the cell was free and now holds the entity.
+     */
+    public boolean claim(int id, Location location)
+    {
+        int cell = cellOf(location.getRow(), location.getCol());
+        if(!CELLS.compareAndSet(field, cell, EntityStore.NONE, id)) {
+            return false;
+        }
+        entities.setCell(id, cell);
+        setOccupant(cell, entities.getSpecies(id), true);
+        markDirty(cell);
+        return true;
+    }
+
+    /**
+     * Claim the first free cell next to a location, going clockwise
+     * from the given neighbour, for an entity that is not in the grid.
+     * If another thread takes the cell first, the next free one is
+     * tried, until none is left.
+     * @param id The entity.
+     * @param location The location whose neighbours are wanted.
+     * @param start The neighbour to start from, 0 to MAX_ADJACENT - 1.
+     * @return The cell claimed, or null if no neighbour was free.
+     */
+    public Location claimFreeAdjacent(int id, Location location, int start)
+    {
+        int tried = 0;
+        while(true) {
+            int n = pickNeighbour(freeAdjacentMask(location) & ~tried, start);
+            if(n < 0) {
+                return null;
+            }
+            Location free = neighbour(location, n);
+            if(claim(id, free)) {
+                return free;
+            }
+            tried |= 1 << n;
+        }
+    }
+
+    /**
+     * Let a newborn that found no room die of overcrowding, without
+     * ever having entered the grid. Its birth and death are reported
+     * in the cell it was meant for.
+     * @param id The newborn.
+     * @param cell The cell it was meant for.
+     */
+    public void stillborn(int id, int cell)
+    {
+        entities.setCell(id, EntityStore.NO_CELL);
+        Object young = entities.getEntity(id);
+        if(young instanceof Animal) {
+            ((Animal) young).setDead();
+        }
+        else {
+            ((Plant) young).setDead();
+        }
+        entities.setFate(id, entities.getFate(id), cell);
+    }
+
+    /**
+     * Place a newborn in a concurrent field, or next to the entity
+     * acting if its cell has been taken.
+     * @param id The newborn.
+     * @param location Where it is meant to be.
+     */
+    private void placeConcurrently(int id, Location location)
+    {
+        if(claim(id, location)) {
+            return;
+        }
+        int parent = actorCell.get()[0];
+        if(parent == EntityStore.NO_CELL
+           || claimFreeAdjacent(id, locations[parent], neighbourAfter(locations[parent], location)) == null) {
+            stillborn(id, cellOf(location.getRow(), location.getCol()));
+        }
+    }
+
+    /**
+     * Move an entity in a concurrent field, to another free neighbour
+     * if its cell has been taken. It stays if there is none.
+     * @param id The entity.
+     * @param from Where it stands.
+     * @param to Where it means to go.
+     */
+    private void moveConcurrently(int id, Location from, Location to)
+    {
+        if(claim(id, to) || claimFreeAdjacent(id, from, neighbourAfter(from, to)) != null) {
+            release(cellOf(from.getRow(), from.getCol()));
+        }
+    }
+
+    /**
+     * Empty a cell of a concurrent field. Its bits are cleared before
+     * the cell is, so that they cannot wipe out those of the next
+     * entity to claim it.
+     * @param cell The cell.
+     */
+    private void release(int cell)
+    {
+        int id = (int) CELLS.getVolatile(field, cell);
+        if(id != EntityStore.NONE) {
+            setOccupant(cell, entities.getSpecies(id), false);
+            CELLS.setRelease(field, cell, EntityStore.NONE);
+        }
+        markDirty(cell);
+    }
+
+    /**
+     * @param location A location.
+     * @param next One of its neighbours.
+     * @return The number of the neighbour after next, going clockwise,
+     *         or 0 if next is not a neighbour.
+     */
+    private int neighbourAfter(Location location, Location next)
+    {
+        int rowOffset = next.getRow() - location.getRow();
+        int colOffset = next.getCol() - location.getCol();
+        for(int n = 0; n < MAX_ADJACENT; n++) {
+            if(ROW_OFFSETS[n] == rowOffset && COL_OFFSETS[n] == colOffset) {
+                return (n + 1) % MAX_ADJACENT;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Tell whether every cell may have changed since the last call of
+     * clearDirty, as after the field was cleared or restored. Then
+     * there is no need to ask nextDirtyCell for the changed cells.
+     * @return true if every cell is to be taken as changed.
+     */
+    public boolean isAllDirty()
+    {
+        return allDirty;
+    }
+
+    /**
+     * Find the first cell, from the given one onwards, whose occupant
+     * has changed since the last call of clearDirty. Cells changed as
+     * a whole (see isAllDirty) are not included.
+     * @param from The cell to start looking from.
+     * @return The changed cell, or -1 if there is none.
+     */
+    public int nextDirtyCell(int from)
+    {
+        int word = from >>> 6;
+        if(word >= dirty.length()) {
+            return -1;
+        }
+        long bits = dirty.get(word) & (-1L << (from & 63));
+        while(bits == 0) {
+            if(++word == dirty.length()) {
+                return -1;
+            }
+            bits = dirty.get(word);
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Forget which cells have changed.
+     */
+    public void clearDirty()
+    {
+        allDirty = false;
+        for(int word = 0; word < dirty.length(); word++) {
+            if(dirty.get(word) != 0) {
+                dirty.set(word, 0);
+            }
+        }
+    }
+
+    /**
+     * Note that the occupant of every cell may have changed.
+     */
+    private void markAllDirty()
+    {
+        allDirty = true;
+    }
+
+    /**
+     * Note that the occupant of a cell has changed.
+     * @param cell The cell.
+     */
+    private void markDirty(int cell)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        setBit(dirty, cell, true);
+    }
+
+    /**
+     * Set or clear a cell's bits in the occupied board and in the
+     * board of a species.
+     * @param cell The cell.
+     * @param kind The species of the entity arriving or leaving.
+     * @param present true if the entity arrives, false if it leaves.
+     */
+    private void setOccupant(int cell, Species kind, boolean present)
+    {
+        setBit(occupants[kind.ordinal()], cell, present);
+        setBit(occupied, cell, present);
+    }
+
+    /**
+     * Set or clear one bit of a bitboard. Other threads may be
+     * changing other bits of the same word, hence the CAS loop.
+     * @param board The bitboard.
+     * @param cell The cell whose bit changes.
+     * @param value The new value of the bit.
+     */
+    private static void setBit(AtomicLongArray board, int cell, boolean value)
+    {
+        int word = cell >>> 6;
+        long bit = 1L << (cell & 63);
+        long bits;
+        long changed;
+        do {
+            bits = board.get(word);
+            changed = value ? bits | bit : bits & ~bit;
+            if(changed == bits) {
+                return;
+            }
+        } while(!board.compareAndSet(word, bits, changed));
+    }
+
+    /**
+     * Clear some bits and set others in one word of a bitboard.
+     * @param board The bitboard.
+     * @param word The word.
+     * @param clear The bits to clear.
+     * @param set The bits to set.
+     */
+    private static void changeBits(AtomicLongArray board, int word, long clear, long set)
+    {
+        long bits;
+        long changed;
+        do {
+            bits = board.get(word);
+            changed = (bits & ~clear) | set;
+            if(changed == bits) {
+                return;
+            }
+        } while(!board.compareAndSet(word, bits, changed));
+    }
+
+    /**
+     * Read three bits of a bitboard: those of a cell and the two
+     * cells after it. The cell may be -1, whose bit reads as 0.
+     * @param board The bitboard.
+     * @param cell The first of the three cells.
+     * @return The three bits, the first cell's in bit 0.
+     */
+    private static int threeBits(AtomicLongArray board, int cell)
+    {
+        if(cell < 0) {
+            return (int) (board.get(0) << 1) & 7;
+        }
+        int word = cell >>> 6;
+        int shift = cell & 63;
+        long bits = board.get(word) >>> shift;
+        if(shift > 61 && word + 1 < board.length()) {
+            bits |= board.get(word + 1) << (64 - shift);
+        }
+        return (int) bits & 7;
     }
 
     /**
@@ -98,93 +691,375 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        return entities.getEntity(field[cellOf(row, col)]);
     }
 
     /**
-     * Generate a random location that is adjacent to the
-     * given location, or is the same location.
-     * The returned location will be within the valid bounds
-     * of the field.
-     * @param location The location from which to generate an adjacency.
-     * @return A valid location within the grid area.
+     * Return the animal in the given cell, if any.
+     * @param cell A cell packed as by cellOf.
+     * @return The animal in the cell, or null if there is none.
+     */
+    public Object getObjectAt(int cell)
+    {
+        return entities.getEntity(field[cell]);
+    }
+
+    /**
+     * Return the id of the animal in the given cell.
+     * @param cell A cell packed as by cellOf.
+     * @return The id of the animal in the cell, or EntityStore.NONE.
      */
-    public Location randomAdjacentLocation(Location location)
+    public int getIdAt(int cell)
     {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        return field[cell];
     }
 
     /**
-     * Get a shuffled list of the free adjacent locations.
+     * Exchange the ids of two entities in the store and in the grid.
+     * The animal or plant objects must be told their new ids.
+     * @param a An id.
+     * @param b Another id.
+     */
+    public void swapIds(int a, int b)
+    {
+        entities.swap(a, b);
+        int cellA = entities.getCell(a);
+        int cellB = entities.getCell(b);
+        if(cellB != EntityStore.NO_CELL && field[cellB] == a) {
+            field[cellB] = b;
+        }
+        if(cellA != EntityStore.NO_CELL && field[cellA] == b) {
+            field[cellA] = a;
+        }
+    }
+
+    /**
+     * Return the store that holds the state of every animal and
+     * plant in this field.
+     * @return The field's entity store.
+     */
+    public EntityStore getEntities()
+    {
+        return entities;
+    }
+
+    /**
+     * Pack a row and column into a single cell number.
+     * Cells are numbered row by row, starting from zero.
+     * @param row The row.
+     * @param col The column.
+     * @return The cell number of (row, col).
+     */
+    public int cellOf(int row, int col)
+    {
+        return row * width + col;
+    }
+
+    /**
+     * @param cell A cell packed as by cellOf.
+     * @return The row of the cell.
+     */
+    public int cellRow(int cell)
+    {
+        return cell / width;
+    }
+
+    /**
+     * @param cell A cell packed as by cellOf.
+     * @return The column of the cell.
+     */
+    public int cellCol(int cell)
+    {
+        return cell % width;
+    }
+
+    /**
+     * Return the field's location for the given row and column.
+     * The field hands out the same Location object for a cell every
+     * time, so locations obtained from it can be compared with ==
+     * and never need to be created by the caller.
+     * @param row The row.
+     * @param col The column.
+     * @return The location of (row, col).
+     */
+    public Location locationAt(int row, int col)
+    {
+        return locations[cellOf(row, col)];
+    }
+
+    /**
+     * Return the field's location for a packed cell.
+     * @param cell A cell packed as by cellOf.
+     * @return The location of the cell.
+     */
+    public Location locationOf(int cell)
+    {
+        return locations[cell];
+    }
+
+    /**
+     * Write the cells adjacent to the given location into a buffer
+     * owned by the caller, going clockwise from the given neighbour,
+     * so that no list is built. The location itself is not included
+     * and all cells lie within the grid. Callers pass a start drawn
+     * from their own random stream, which is enough randomness for
+     * the animals and much cheaper than shuffling.
+     * @param location The location from which to generate adjacencies.
+     * @param cells Receives the adjacent cells, packed as by cellOf.
+     *              Must have room for MAX_ADJACENT cells.
+     * @param start The neighbour to start from, 0 to MAX_ADJACENT - 1.
+     * @return The number of cells written to the buffer.
+     */
+    public int adjacentCells(Location location, int[] cells, int start)
+    {
+        return collectAdjacent(location, cells, start, false);
+    }
+
+    /**
+     * Write the free cells adjacent to the given location into a
+     * buffer owned by the caller, going clockwise from the given
+     * neighbour.
+     * @param location Get cells adjacent to this.
+     * @param cells Receives the free cells, packed as by cellOf.
+     *              Must have room for MAX_ADJACENT cells.
+     * @param start The neighbour to start from, 0 to MAX_ADJACENT - 1.
+     * @return The number of cells written to the buffer.
+     */
+    public int freeAdjacentCells(Location location, int[] cells, int start)
+    {
+        return collectAdjacent(location, cells, start, true);
+    }
+
+    /**
+     * Get a list of the free adjacent locations, going clockwise from
+     * the given neighbour.
      * @param location Get locations adjacent to this.
+     * @param start The neighbour to start from, 0 to MAX_ADJACENT - 1.
      * @return A list of free adjacent locations.
      */
-    public List<Location> getFreeAdjacentLocations(Location location)
+    public List<Location> getFreeAdjacentLocations(Location location, int start)
     {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) == null) {
-                free.add(next);
-            }
+        List<Location> free = new ArrayList<>(MAX_ADJACENT);
+        int[] cells = new int[MAX_ADJACENT];
+        int count = freeAdjacentCells(location, cells, start);
+        for(int i = 0; i < count; i++) {
+            free.add(locations[cells[i]]);
         }
         return free;
     }
 
     /**
-     * Try to find a free location that is adjacent to the
-     * given location. If there is none, return null.
-     * The returned location will be within the valid bounds
-     * of the field.
+     * Find the first free location adjacent to the given location,
+     * going clockwise from the given neighbour. If there is none,
+     * return null.
      * @param location The location from which to generate an adjacency.
-     * @return A valid location within the grid area.
+     * @param start The neighbour to start from, 0 to MAX_ADJACENT - 1.
+     * @return A valid location within the grid area, or null.
      */
-    public Location freeAdjacentLocation(Location location)
+    public Location freeAdjacentLocation(Location location, int start)
     {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
-        }
-        else {
-            return null;
-        }
+        int n = pickNeighbour(freeAdjacentMask(location), start);
+        return n < 0 ? null : neighbour(location, n);
     }
 
     /**
-     * Return a shuffled list of locations adjacent to the given one.
-     * The list will not include the location itself.
-     * All locations will lie within the grid.
+     * Return a list of the locations adjacent to the given one, going
+     * clockwise from the given neighbour. The list will not include
+     * the location itself. All locations will lie within the grid.
      * @param location The location from which to generate adjacencies.
+     * @param start The neighbour to start from, 0 to MAX_ADJACENT - 1.
      * @return A list of locations adjacent to that given.
      */
-    public List<Location> adjacentLocations(Location location)
+    public List<Location> adjacentLocations(Location location, int start)
     {
         assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
-        if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
-                }
+        List<Location> adjacent = new ArrayList<>(MAX_ADJACENT);
+        int[] cells = new int[MAX_ADJACENT];
+        int count = adjacentCells(location, cells, start);
+        for(int i = 0; i < count; i++) {
+            adjacent.add(locations[cells[i]]);
+        }
+        return adjacent;
+    }
+
+    /**
+     * Return which neighbours of a location hold an animal or plant
+     * of one of the given species, as an 8-bit mask. Bit n stands for
+     * the n-th neighbour clockwise from the top left corner, the
+     * order that pickNeighbour and neighbour use.
+     * @param location The location whose neighbours are wanted.
+     * @param kinds The species to look for, as a set of Species.bit().
+     * @return The mask of neighbours holding one of the species.
+     */
+    public int adjacentMask(Location location, int kinds)
+    {
+        int mask = 0;
+        for(int kind = 0; kinds != 0; kind++, kinds >>>= 1) {
+            if((kinds & 1) != 0) {
+                mask |= neighbourBits(occupants[kind], location);
             }
+        }
+        return mask;
+    }
+
+    /**
+     * Return which neighbours of a location are free, as an 8-bit
+     * mask laid out like that of adjacentMask.
+     * @param location The location whose neighbours are wanted.
+     * @return The mask of free neighbours within the field.
+     */
+    public int freeAdjacentMask(Location location)
+    {
+        return ~neighbourBits(occupied, location) & edgeMask(location);
+    }
+
+    /**
+     * Pick the first neighbour in a mask, going clockwise from the
+     * given one. With a random start this picks a random set bit
+     * the way freeAdjacentLocation picks a random free cell.
+     * @param mask A mask as returned by adjacentMask.
+     * @param start The neighbour to start from, 0 to MAX_ADJACENT - 1.
+     * @return The neighbour picked, or -1 if the mask is empty.
+     */
+    public static int pickNeighbour(int mask, int start)
+    {
+        int turned = ((mask >>> start) | (mask << (MAX_ADJACENT - start))) & 0xFF;
+        if(turned == 0) {
+            return -1;
+        }
+        return (start + Integer.numberOfTrailingZeros(turned)) % MAX_ADJACENT;
+    }
+
+    /**
+     * Return a neighbour of a location.
+     * @param location The location.
+     * @param n The neighbour, numbered as in adjacentMask. It must
+     *          lie within the field.
+     * @return The location of the neighbour.
+     */
+    public Location neighbour(Location location, int n)
+    {
+        return locationAt(location.getRow() + ROW_OFFSETS[n], location.getCol() + COL_OFFSETS[n]);
+    }
+
+    /**
+     * Gather the bits of a location's eight neighbours from a
+     * bitboard into a mask laid out like that of adjacentMask.
+     * Neighbours outside the field read as 0.
+     * @param board The bitboard.
+     * @param location The location.
+     * @return The mask.
+     */
+    private int neighbourBits(AtomicLongArray board, Location location)
+    {
+        int row = location.getRow();
+        int cell = cellOf(row, location.getCol());
+        int mask = 0;
+        if(row > 0) {
+            mask = threeBits(board, cell - width - 1);
+        }
+        int middle = threeBits(board, cell - 1);
+        mask |= (middle & 4) << 1 | (middle & 1) << 7;
+        if(row < depth - 1) {
+            int below = threeBits(board, cell + width - 1);
+            mask |= (below & 1) << 6 | (below & 2) << 4 | (below & 4) << 2;
+        }
+        return mask & edgeMask(location);
+    }
+
+    /**
+     * @param location A location.
+     * @return The mask of the location's neighbours that lie within
+     *         the field, laid out like that of adjacentMask.
+     */
+    private int edgeMask(Location location)
+    {
+        int row = location.getRow();
+        int col = location.getCol();
+        int mask = 0xFF;
+        if(row == 0) {
+            mask &= ~0x07;
+        }
+        if(row == depth - 1) {
+            mask &= ~0x70;
+        }
+        if(col == 0) {
+            mask &= ~0xC1;
+        }
+        if(col == width - 1) {
+            mask &= ~0x1C;
+        }
+        return mask;
+    }
 
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
+    /**
+     * Write the cells around a location into the given buffer,
+     * clockwise from the given neighbour.
+     * @param location The location whose neighbours are wanted.
+     * @param cells Receives the cells, packed as by cellOf.
+     * @param start The neighbour to start from.
+     * @param freeOnly If true, only empty cells are written.
+     * @return The number of cells written to the buffer.
+     */
+    private int collectAdjacent(Location location, int[] cells, int start, boolean freeOnly)
+    {
+        assert location != null : "Null location passed to adjacentCells";
+        int mask = freeOnly ? freeAdjacentMask(location) : edgeMask(location);
+        int cell = cellOf(location.getRow(), location.getCol());
+        int turned = ((mask >>> start) | (mask << (MAX_ADJACENT - start))) & 0xFF;
+        int count = 0;
+        while(turned != 0) {
+            int n = (start + Integer.numberOfTrailingZeros(turned)) % MAX_ADJACENT;
+            cells[count++] = cell + ROW_OFFSETS[n] * width + COL_OFFSETS[n];
+            turned &= turned - 1;
         }
-        return locations;
+        return count;
+    }
+
+    /**
+     * @return The seed the random streams of the field's entities
+     *         derive from.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return The rules the field's species live by.
+     */
+    public SpeciesRules getRules()
+    {
+        return rules;
+    }
+
+    /**
+     * @return The time of day and the weather, shared by everything
+     *         in the field.
+     */
+    public Environment getEnvironment()
+    {
+        return environment;
+    }
+
+    /**
+     * @return The step being simulated.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Tell the field which step is being simulated, so that entities
+     * born in it get their own random streams, and move the
+     * environment on to that step.
+     * @param step The step being simulated.
+     */
+    public void setStep(int step)
+    {
+        this.step = step;
+        environment.advance(step);
     }
 
     /**
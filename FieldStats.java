@@ -1,30 +1,29 @@
-import java.awt.Color;
-import java.util.HashMap;
 
 /**
  * This class collects and provides some statistical data on the state 
- * of a field. It is flexible: it will create and maintain a counter 
- * for any class of object that is found within the field.
+ * of a field. It keeps a counter for every species, indexed by the
+ * species' ordinal, and fills them from the counts the field's
+ * EntityStore keeps up to date as entities are born, placed and die,
+ * so no statistic needs a scan of the field.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 21.02.2020 (2)
  */
 public class FieldStats
 {
-    // Counters for each type of entity (shark, fish, etc.) in the simulation.
-    private HashMap<Class, Counter> counters;
-    // Whether the counters are currently up to date.
-    private boolean countsValid;
+    // Counters for each species (shark, fish, etc.) in the simulation,
+    // indexed by species ordinal.
+    private Counter[] counters;
 
     /**
      * Construct a FieldStats object.
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
-        countsValid = true;
+        counters = new Counter[Species.count()];
+        for(int kind = 0; kind < counters.length; kind++) {
+            counters[kind] = new Counter(Species.fromOrdinal(kind).getName());
+        }
     }
 
     /**
@@ -33,12 +32,9 @@ public class FieldStats
      */
     public String getPopulationDetails(Field field)
     {
-        StringBuffer buffer = new StringBuffer();
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        StringBuilder buffer = new StringBuilder();
+        generateCounts(field);
+        for(Counter info : counters) {
             buffer.append(info.getName());
             buffer.append(": ");
             buffer.append(info.getCount());
@@ -46,42 +42,16 @@ public class FieldStats
         }
         return buffer.toString();
     }
-    
-    /**
-     * Invalidate the current set of statistics; reset all 
-     * counts to zero.
-     */
-    public void reset()
-    {
-        countsValid = false;
-        for(Class key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
-        }
-    }
 
     /**
-     * Increment the count for one class of animal.
-     * @param animalClass The class of animal to increment.
+     * Return how many of a species there are in the field.
+     * @param field The field to look at.
+     * @param kind The species.
+     * @return The number of that species in the field.
      */
-    public void incrementCount(Class animalClass)
+    public int getCount(Field field, Species kind)
     {
-        Counter count = counters.get(animalClass);
-        if(count == null) {
-            // We do not have a counter for this species yet.
-            // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
-        }
-        count.increment();
-    }
-
-    /**
-     * Indicate that an animal count has been completed.
-     */
-    public void countFinished()
-    {
-        countsValid = true;
+        return field.getEntities().count(kind);
     }
 
     /**
@@ -93,12 +63,9 @@ public class FieldStats
     {
         // How many counts are non-zero.
         int nonZero = 0;
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
-            if(info.getCount() > 0) {
+        EntityStore entities = field.getEntities();
+        for(int kind = 0; kind < counters.length; kind++) {
+            if(entities.count(Species.fromOrdinal(kind)) > 0) {
                 nonZero++;
             }
         }
@@ -106,23 +73,15 @@ public class FieldStats
     }
     
     /**
-     * Generate counts of the number of sharkes and fishs.
-     * These are not kept up to date as sharkes and fishs
-     * are placed in the field, but only when a request
-     * is made for the information.
+     * Copy the current count of every species from the field's
+     * entity store into the counters.
      * @param field The field to generate the stats for.
      */
     private void generateCounts(Field field)
     {
-        reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    incrementCount(animal.getClass());
-                }
-            }
+        EntityStore entities = field.getEntities();
+        for(int kind = 0; kind < counters.length; kind++) {
+            counters[kind].setCount(entities.count(Species.fromOrdinal(kind)));
         }
-        countsValid = true;
     }
 }
@@ -1,6 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
 
 /**
  * A simple model of a fish.
@@ -12,43 +10,13 @@ import java.util.Random;
  */
 public class Fish extends Animal
 {
-    // Characteristics shared by all fish (class variables).
+    // Characteristics shared by all fish (class variables). Their
+    // life history and diet are in the field's SpeciesRules.
 
-    // The age at which a fish can start to breed.
-    private static final int BREEDING_AGE = 5;
-    
-    // The age to which a fish can live.
-    private static final int MAX_AGE = 1000;
-    
-    // The likelihood of a fish breeding.
-    private static final double BREEDING_PROBABILITY = 0.80;
-    
-    // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 10;
-    
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-    
-    // The food value of a single plankton.
+    // The food values a new fish's food level is made up from.
     private static final int PLANKTON_FOOD_VALUE = 3;
-    
-    // The food value of a single seaweed.
     private static final int SEAWEED_FOOD_VALUE = 2;
 
-    // Individual characteristics (instance fields)
-    
-    //distinguishes between male and female
-    private boolean isMale;
-    
-    // The fish's age.
-    private int age;
-    
-    //Calling the Disease Class
-    private Disease disease;
-    
-    // The fish's food level, which is increased by eating food.
-    private int foodLevel;
-    
     /**
      * Create a new fish. A fish may be created with age
      * zero (a new born) or with a random age.
@@ -60,15 +28,56 @@ public class Fish extends Animal
      */
     public Fish(boolean randomAge, Field field, Location location)
     {
-        super(field, location);
-        age = 0;
+        super(Species.FISH, field, location);
+        start(randomAge);
+    }
+
+    /**
+     * Recreate a fish from a checkpoint. Its state is already in the
+     * field's entity store.
+     * 
+     * @param field The field currently occupied.
+     * @param id The fish's id in the field's entity store.
+     */
+    public Fish(Field field, int id)
+    {
+        super(field, id);
+    }
+
+    /**
+     * Return a newborn fish at the given location, bringing a dead fish
+     * from the field's pool back to life if there is one, so that no
+     * object has to be allocated.
+     * 
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn fish.
+     */
+    public static Fish newborn(Field field, Location location)
+    {
+        Fish young = (Fish) field.getEntities().reuse(Species.FISH);
+        if(young == null) {
+            return new Fish(false, field, location);
+        }
+        young.enter(Species.FISH, location);
+        young.start(false);
+        return young;
+    }
+
+    /**
+     * Give a fish that has just come to life its age, food level and
+     * sex.
+     * 
+     * @param randomAge If true, the fish will have a random age.
+     */
+    private void start(boolean randomAge)
+    {
+        setAge(0);
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
-            foodLevel = rand.nextInt(PLANKTON_FOOD_VALUE) + rand.nextInt(SEAWEED_FOOD_VALUE);
+            setAge(nextInt(getField().getRules().getMaxAge(Species.FISH)));
+            setFoodLevel(nextInt(PLANKTON_FOOD_VALUE) + nextInt(SEAWEED_FOOD_VALUE));
         }
-        disease = new Disease();
-        Random rd = new Random(); // creating Random object
-        isMale = rd.nextBoolean(); // distingushing between male and female
+        setMale(nextBoolean()); // distingushing between male and female
     }
 
     /**
@@ -78,11 +87,10 @@ public class Fish extends Animal
      */
     public void act(List<Animal> newFish)
     {
-        incrementAge();
         if(isAlive()) {
             giveBirth(newFish);            
             // Try to move into a free location.
-            Location newLocation = getField().freeAdjacentLocation(getLocation());
+            Location newLocation = getField().freeAdjacentLocation(getLocation(), nextInt(Field.MAX_ADJACENT));
             if(newLocation != null) {
                 setLocation(newLocation);
             }
@@ -98,35 +106,10 @@ public class Fish extends Animal
      */
     private void incrementHunger()
     {
-        foodLevel--; //decreasing food level of fish by one
+        setFoodLevel(getFoodLevel() - 1); //decreasing food level of fish by one
         //if the food level of fish is less than or equal to 0
-        if(foodLevel <= 0) { 
-            setDead(); //the fish will be dead
-        }
-    }
-
-    /**
-     * Increase the age.
-     * This could result in the fish's death.
-     */
-    private void incrementAge()
-    {
-        age++; //increment the age 
-        //if the current age was grater than max age 
-        if(age > MAX_AGE) {
-            setDead(); //the fish will be dead
-        }
-    }
-    
-    /**
-     * Increase the age by 5  
-     */
-    private void diseaseCounter()
-    {
-        age += 5;
-        //if the current age was grater than max age 
-        if(age > MAX_AGE) {
-            setDead(); //the fish will be dead
+        if(getFoodLevel() <= 0) { 
+            setDead(EventRing.Type.STARVATION); //the fish will be dead
         }
     }
 
@@ -140,11 +123,12 @@ public class Fish extends Animal
         // New fish are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int[] free = cellBuffer();
+        int freeCount = field.freeAdjacentCells(getLocation(), free, nextInt(Field.MAX_ADJACENT));
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Fish young = new Fish(false, field, loc);
+        for(int b = 0; b < births && b < freeCount; b++) {
+            Location loc = field.locationOf(free[b]);
+            Fish young = newborn(field, loc);
             newFish.add(young);
         }
     }
@@ -152,28 +136,13 @@ public class Fish extends Animal
     /**
      * Look for fish adjacent to the current location.
      * Only the first live fish is eaten.
-     * fish can only eat seaweed
+     * by default fish only eat seaweed
      * @return Where food was found, or null if it wasn't.
      */
     private Location findFood()
     {
-        //check the animals and plants around the fish
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object plant = field.getObjectAt(where);            
-            SeaWeed seaWeed = (SeaWeed) plant;
-            
-            //if the adjacent seaweed was alive let the fish to eat it
-            if(seaWeed.isAlive()) { 
-                seaWeed.setDead();
-                foodLevel = SEAWEED_FOOD_VALUE;
-                return where;
-            }
-        }
-        return null;
+        //the fish's diet is in the species rules
+        return eat(nextInt(Field.MAX_ADJACENT));
     }
 
     /**
@@ -184,8 +153,9 @@ public class Fish extends Animal
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        SpeciesRules rules = getField().getRules();
+        if(canBreed() && nextDouble() <= rules.getBreedingProbability(Species.FISH)) {
+            births = nextInt(rules.getMaxLitterSize(Species.FISH)) + 1;
         }
         return births;
     }
@@ -193,40 +163,9 @@ public class Fish extends Animal
     /**
      * A fish can breed if it has reached the breeding age.
      * @return true if the fish can breed, false otherwise.
-     * a fish can only breed if it is next to its opposite gender
      */
     private boolean canBreed()
     {
-
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            for (int i =0; i>= field.adjacentLocations(getLocation()).size(); i++)
-            {
-                //if the adjacent animal is a male fish 
-                if(animal instanceof Fish && isMale)
-                {
-                    //if the fish is female and is old enough to breed
-                    if (!isMale && age >= BREEDING_AGE && foodLevel>1)
-                    {
-                        return true;//the fish can breed
-                    }
-                }
-                
-                //if the adjacent animal is a female fish
-                if(animal instanceof Fish && !isMale)
-                {
-                    //if the fish is male and is old enough to breed
-                    if (isMale && age >= BREEDING_AGE && foodLevel>1)
-                    {
-                        return true; //the fish can breed
-                    }
-                }
-            }
-        }
-        return age >= BREEDING_AGE;
+        return getAge() >= getField().getRules().getBreedingAge(Species.FISH);
     }
 }
\ No newline at end of file
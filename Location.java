@@ -1,5 +1,8 @@
 /**
  * Represent a location in a rectangular grid.
+ * Locations are immutable. A Field makes one location per cell,
+ * available through Field.locationAt, and each knows its cell
+ * number, which serves as its hash code.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 21.02.2020 (2)
@@ -7,28 +10,33 @@
 public class Location
 {
     // Row and column positions.
-    private int row;
-    private int col;
+    private final int row;
+    private final int col;
+    // The cell number, row * width + col, worked out once.
+    private final int cell;
 
     /**
-     * Represent a row and column.
+     * Represent a row and column of a grid.
      * @param row The row.
      * @param col The column.
+     * @param width The width of the grid.
      */
-    public Location(int row, int col)
+    public Location(int row, int col, int width)
     {
         this.row = row;
         this.col = col;
+        cell = row * width + col;
     }
     
     /**
-     * Implement content equality.
+     * Implement content equality. Locations of grids of different
+     * widths are never equal, as their cell numbers differ.
      */
     public boolean equals(Object obj)
     {
         if(obj instanceof Location) {
             Location other = (Location) obj;
-            return row == other.getRow() && col == other.getCol();
+            return row == other.getRow() && col == other.getCol() && cell == other.cell;
         }
         else {
             return false;
@@ -45,14 +53,13 @@ public class Location
     }
     
     /**
-     * Use the top 16 bits for the row value and the bottom for
-     * the column. Except for very big grids, this should give a
-     * unique hash code for each (row, col) pair.
+     * Use the cell number, which is unique within the grid for any
+     * grid of fewer than 2^31 cells, however wide.
      * @return A hashcode for the location.
      */
     public int hashCode()
     {
-        return (row << 16) + col;
+        return cell;
     }
     
     /**
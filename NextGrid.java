@@ -0,0 +1,444 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The next state of a field while the acts of a synchronous step run
+ * (see Field.startSynchronousActs). Every act sees the grid as it was
+ * at the start of the step; what it would change - a move, a birth, a
+ * meal or a death - is written down here as a claim instead. Once all
+ * have acted, resolve settles the claims and writes the outcome into
+ * the grid.
+ *
+ * Every thread writes its claims into a buffer of its own, so the acts
+ * share nothing and can run in any order on any number of threads.
+ * Several claims may fall on one cell: two movers choosing the same
+ * free cell, two parents the same cell for their young, two predators
+ * the same prey. Each claim gets a key hashed from the seed, the step,
+ * the cell claimed and the cell of the claimant, and the lowest key
+ * wins the cell. The winner of a cell depends only on the claims for
+ * it, never on the order they were made or settled in, so the outcome
+ * is the same however many threads acted.
+ *
+ * The claims are settled as follows. A mover that loses stays where
+ * it was. A predator that loses stays too, and goes without the meal.
+ * A newborn that loses has no room and dies of overcrowding. A meal
+ * only happens if the prey is still alive at the end of the acts, and
+ * anything claimed as prey does nothing else in the step, whether the
+ * meal happens or not: not even its young are born. Nor are the young
+ * of a parent that died later in its act.
+ *
+ * Settling runs in phases, each of which must be over before the next
+ * starts. Within a phase, every claim is dealt with by the range of
+ * cells its cell falls in, and the ranges can be settled on several
+ * threads at once: a claim only ever writes to its own cell and to
+ * the cell of its claimant, and no cell is both the target of a claim
+ * that takes effect and the cell of a claimant that moves.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class NextGrid
+{
+    // The kinds of claim: a newborn entering the field, an entity
+    // moving, a predator moving onto its prey, and an entity leaving
+    // the field, which is not contested.
+    private static final byte PLACE = 0;
+    private static final byte MOVE = 1;
+    private static final byte EAT = 2;
+    private static final byte VACATE = 3;
+
+    // A cell that nobody has claimed.
+    private static final long UNCLAIMED = -1;
+
+    // The ranges of cells settled per thread, and the fewest cells a
+    // range may have.
+    private static final int RANGES_PER_THREAD = 4;
+    private static final int MIN_RANGE_SIZE = 1024;
+
+    // The phases of settling the claims: finding the winner of every
+    // cell, deciding which claims take effect, then meals, departures
+    // and arrivals, and lastly forgetting the winners.
+    private enum Phase { CONTEST, DECIDE, MEALS, DEPARTURES, ARRIVALS, FORGET }
+
+    // The field whose next state this is.
+    private final Field field;
+
+    // For each cell, the claim that wins it so far, as the buffer's
+    // number in the high half and the claim's index in the low half.
+    private final long[] winner;
+
+    // The buffers of every thread that has made claims.
+    private final List<Claims> buffers = new ArrayList<>();
+
+    // The buffer of the calling thread.
+    private final ThreadLocal<Claims> local = ThreadLocal.withInitial(this::newBuffer);
+
+    /**
+     * Create the next state of a field.
+     * @param field The field.
+     */
+    public NextGrid(Field field)
+    {
+        this.field = field;
+        winner = new long[field.getDepth() * field.getWidth()];
+        Arrays.fill(winner, UNCLAIMED);
+    }
+
+    /**
+     * Forget the claims of the last step.
+     */
+    public synchronized void clear()
+    {
+        for(Claims claims : buffers) {
+            claims.count = 0;
+        }
+    }
+
+    /**
+     * Note that an entity starts to act, so that what it claims is
+     * put down to the cell it stands in.
+     * @param cell The entity's cell, or EntityStore.NO_CELL.
+     */
+    public void startAct(int cell)
+    {
+        Claims claims = local.get();
+        claims.origin = cell;
+        claims.sequence = 0;
+    }
+
+    /**
+     * Claim a cell for a newborn.
+     * @param id The newborn.
+     * @param cell The cell.
+     */
+    public void place(int id, int cell)
+    {
+        claim(PLACE, id, cell, 0);
+    }
+
+    /**
+     * Claim a cell for an entity to move to.
+     * @param id The entity.
+     * @param cell The cell.
+     */
+    public void move(int id, int cell)
+    {
+        Claims claims = local.get();
+        int last = claims.count - 1;
+        if(last >= 0 && claims.kinds[last] == EAT && claims.ids[last] == id && claims.cells[last] == cell) {
+            // The predator moving onto the prey it has just claimed.
+            return;
+        }
+        claim(MOVE, id, cell, 0);
+    }
+
+    /**
+     * Claim the cell of a prey for the predator to eat it and move there.
+     * @param id The predator.
+     * @param cell The prey's cell.
+     * @param food The food level the predator gets from the prey.
+     */
+    public void eat(int id, int cell, int food)
+    {
+        claim(EAT, id, cell, food);
+    }
+
+    /**
+     * Note that an entity leaves the field.
+     * @param id The entity.
+     * @param cell Its cell.
+     */
+    public void vacate(int id, int cell)
+    {
+        claim(VACATE, id, cell, 0);
+    }
+
+    /**
+     * Settle the claims and write the outcome into the grid. The field
+     * must no longer be collecting claims.
+     * @param stepper The stepper whose threads settle the ranges of
+     *                cells, or null to settle them on this thread.
+     */
+    public synchronized void resolve(ParallelStepper stepper)
+    {
+        int ranges = stepper == null ? 1
+                     : Math.max(1, Math.min(stepper.getThreads() * RANGES_PER_THREAD,
+                                            winner.length / MIN_RANGE_SIZE));
+        int rangeSize = (winner.length + ranges - 1) / ranges;
+        forEach(stepper, buffers.size(), b -> buffers.get(b).sortByRange(rangeSize, ranges));
+        // Which claims take effect is decided before anything changes.
+        // Meals come first and departures next, so that the cells they
+        // free are empty before anything arrives.
+        for(Phase phase : Phase.values()) {
+            forEach(stepper, ranges, range -> settle(phase, range));
+        }
+        for(Claims claims : buffers) {
+            claims.count = 0;
+        }
+    }
+
+    /**
+     * Run one phase of settling for the claims on a range of cells.
+     * @param phase The phase.
+     * @param range The number of the range.
+     */
+    private void settle(Phase phase, int range)
+    {
+        EntityStore entities = field.getEntities();
+        for(int b = 0; b < buffers.size(); b++) {
+            Claims claims = buffers.get(b);
+            for(int k = claims.starts[range]; k < claims.starts[range + 1]; k++) {
+                int i = claims.order[k];
+                byte kind = claims.kinds[i];
+                int id = claims.ids[i];
+                int cell = claims.cells[i];
+                switch(phase) {
+                    case CONTEST:
+                        if(kind != VACATE) {
+                            contest(b, i);
+                        }
+                        break;
+                    case DECIDE:
+                        claims.effective[i] = kind != VACATE && wins(claims, i);
+                        break;
+                    case MEALS:
+                        if(kind == EAT && claims.effective[i]) {
+                            Species predator = entities.getSpecies(id);
+                            Object prey = field.getObjectAt(cell);
+                            if(prey instanceof Animal) {
+                                ((Animal) prey).setEaten(predator);
+                            }
+                            else {
+                                ((Plant) prey).setEaten(predator);
+                            }
+                            entities.setFoodLevel(id, claims.values[i]);
+                        }
+                        break;
+                    case DEPARTURES:
+                        if(kind == VACATE && field.getIdAt(cell) == id) {
+                            field.clear(field.locationOf(cell));
+                        }
+                        break;
+                    case ARRIVALS:
+                        if(kind == MOVE || kind == EAT) {
+                            if(claims.effective[i]) {
+                                field.move(id, field.locationOf(claims.origins[i]), field.locationOf(cell));
+                            }
+                        }
+                        else if(kind == PLACE) {
+                            if(claims.effective[i]) {
+                                field.place(id, field.locationOf(cell));
+                            }
+                            else {
+                                field.stillborn(id, cell);
+                            }
+                        }
+                        break;
+                    case FORGET:
+                        winner[cell] = UNCLAIMED;
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a piece of work for each number from 0 to count - 1.
+     * @param stepper The stepper whose threads run the work, or null
+     *                to run it on this thread.
+     * @param count The number of pieces of work.
+     * @param work The work, given the number of the piece.
+     */
+    private static void forEach(ParallelStepper stepper, int count, IntConsumer work)
+    {
+        if(stepper == null) {
+            for(int i = 0; i < count; i++) {
+                work.accept(i);
+            }
+        }
+        else {
+            stepper.runEach(count, work);
+        }
+    }
+
+    /**
+     * Record a claim in the calling thread's buffer.
+     * @param kind The kind of claim.
+     * @param id The entity the claim is for.
+     * @param cell The cell claimed.
+     * @param value The food level, for EAT.
+     */
+    private void claim(byte kind, int id, int cell, int value)
+    {
+        Claims claims = local.get();
+        if(claims.count == claims.ids.length) {
+            claims.grow();
+        }
+        int i = claims.count++;
+        claims.kinds[i] = kind;
+        claims.ids[i] = id;
+        claims.cells[i] = cell;
+        claims.origins[i] = claims.origin;
+        claims.sequences[i] = claims.sequence++;
+        claims.values[i] = value;
+        claims.keys[i] = Randomizer.mix(Randomizer.streamSeed(field.getSeed(), field.getStep(), cell)
+                                        + claims.origin);
+    }
+
+    /**
+     * Make a claim the winner of its cell if it beats the winner so far.
+     * @param buffer The number of the claim's buffer.
+     * @param i The claim's index in the buffer.
+     */
+    private void contest(int buffer, int i)
+    {
+        Claims claims = buffers.get(buffer);
+        int cell = claims.cells[i];
+        long best = winner[cell];
+        if(best != UNCLAIMED) {
+            Claims other = buffers.get((int) (best >>> 32));
+            int j = (int) best;
+            int order = Long.compareUnsigned(claims.keys[i], other.keys[j]);
+            if(order == 0) {
+                order = Integer.compare(claims.origins[i], other.origins[j]);
+            }
+            if(order == 0) {
+                order = Integer.compare(claims.sequences[i], other.sequences[j]);
+            }
+            if(order >= 0) {
+                return;
+            }
+        }
+        winner[cell] = (long) buffer << 32 | i;
+    }
+
+    /**
+     * Tell whether a claim takes effect: it must have won its cell, its
+     * entity must still be alive and not claimed as prey, and a meal
+     * needs its prey to be alive. A newborn needs its parent to be
+     * alive and not claimed as prey.
+     * @param claims The claim's buffer.
+     * @param i The claim's index.
+     * @return true if the claim takes effect.
+     */
+    private boolean wins(Claims claims, int i)
+    {
+        int cell = claims.cells[i];
+        long best = winner[cell];
+        if(best == UNCLAIMED || buffers.get((int) (best >>> 32)) != claims || (int) best != i) {
+            return false;
+        }
+        EntityStore entities = field.getEntities();
+        int origin = claims.origins[i];
+        if(claims.kinds[i] == PLACE) {
+            return origin != EntityStore.NO_CELL
+                   && entities.getCell(field.getIdAt(origin)) != EntityStore.NO_CELL
+                   && !isPrey(origin);
+        }
+        if(entities.getCell(claims.ids[i]) == EntityStore.NO_CELL || isPrey(origin)) {
+            return false;
+        }
+        return claims.kinds[i] != EAT || entities.getCell(field.getIdAt(cell)) != EntityStore.NO_CELL;
+    }
+
+    /**
+     * @param cell A cell.
+     * @return true if the occupant of the cell is claimed as prey by a
+     *         predator still alive.
+     */
+    private boolean isPrey(int cell)
+    {
+        long best = winner[cell];
+        if(best == UNCLAIMED) {
+            return false;
+        }
+        Claims claims = buffers.get((int) (best >>> 32));
+        int i = (int) best;
+        return claims.kinds[i] == EAT
+               && field.getEntities().getCell(claims.ids[i]) != EntityStore.NO_CELL;
+    }
+
+    /**
+     * @return A new buffer for the calling thread.
+     */
+    private synchronized Claims newBuffer()
+    {
+        Claims claims = new Claims();
+        buffers.add(claims);
+        return claims;
+    }
+
+    /**
+     * The claims of one thread, column by column.
+     */
+    private static class Claims
+    {
+        // The cell of the entity acting, and the number of claims it
+        // has made so far.
+        int origin;
+        int sequence;
+
+        // The number of claims.
+        int count;
+
+        // The kind, entity, cell, claimant's cell, order within the act,
+        // food level and key of each claim, and whether it takes effect.
+        byte[] kinds = new byte[256];
+        int[] ids = new int[256];
+        int[] cells = new int[256];
+        int[] origins = new int[256];
+        int[] sequences = new int[256];
+        int[] values = new int[256];
+        long[] keys = new long[256];
+        boolean[] effective = new boolean[256];
+
+        // The claims in order of the range of cells they fall in, and
+        // where each range starts in that order.
+        int[] order = new int[256];
+        int[] starts = new int[1];
+        int[] ends = new int[0];
+
+        /**
+         * Sort the claims by the range of cells they fall in.
+         * @param rangeSize The number of cells in a range.
+         * @param ranges The number of ranges.
+         */
+        void sortByRange(int rangeSize, int ranges)
+        {
+            if(starts.length != ranges + 1) {
+                starts = new int[ranges + 1];
+                ends = new int[ranges];
+            }
+            Arrays.fill(starts, 0);
+            for(int i = 0; i < count; i++) {
+                starts[cells[i] / rangeSize + 1]++;
+            }
+            for(int range = 0; range < ranges; range++) {
+                starts[range + 1] += starts[range];
+            }
+            System.arraycopy(starts, 0, ends, 0, ranges);
+            for(int i = 0; i < count; i++) {
+                order[ends[cells[i] / rangeSize]++] = i;
+            }
+        }
+
+        /**
+         * Double the room for claims.
+         */
+        void grow()
+        {
+            int size = ids.length * 2;
+            kinds = Arrays.copyOf(kinds, size);
+            ids = Arrays.copyOf(ids, size);
+            cells = Arrays.copyOf(cells, size);
+            origins = Arrays.copyOf(origins, size);
+            sequences = Arrays.copyOf(sequences, size);
+            values = Arrays.copyOf(values, size);
+            keys = Arrays.copyOf(keys, size);
+            effective = Arrays.copyOf(effective, size);
+            order = Arrays.copyOf(order, size);
+        }
+    }
+}
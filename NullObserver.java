@@ -0,0 +1,29 @@
+
+/**
+ * An observer that ignores the simulation. The simulation never
+ * looks at its own field between steps, so with this observer a run
+ * costs no more than the acting of the animals and plants.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class NullObserver implements SimulatorObserver
+{
+    /**
+     * Do nothing.
+     * @param step Which iteration step it is.
+     * @param field The field of the simulation.
+     */
+    public void showStatus(int step, Field field)
+    {
+    }
+
+    /**
+     * @param field The field of the simulation.
+     * @return Always true: the simulation runs for as many steps as asked.
+     */
+    public boolean isViable(Field field)
+    {
+        return true;
+    }
+}
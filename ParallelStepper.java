@@ -0,0 +1,351 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Let the animals and plants of a simulation step act on several
+ * threads at once.
+ *
+ * The field is cut into square tiles which are coloured like a 2x2
+ * checkerboard, and the step runs in four phases, one per colour.
+ * Everything an entity does - looking around, eating, moving and
+ * giving birth - happens within one cell of where it stands, so two
+ * tiles of the same colour never touch the same cells as long as the
+ * tile between them is at least two cells wide. The tiles of one
+ * colour can therefore run in parallel on a ForkJoinPool without any
+ * locking of the field.
+ *
+ * Every entity draws its random numbers from its own stream (see
+ * Randomizer), so what it does does not depend on the thread it runs
+ * on. Together with the fixed order of phases and of entities within a
+ * tile, this makes a run reproducible for a given seed, however many
+ * threads there are and however the tiles are scheduled. Only the ids
+ * of the newborns depend on the scheduling, as the threads share the
+ * entity store; the simulator renumbers them in the order of the
+ * newborn lists once the acts are over.
+ *
+ * In a synchronous step (see Field.startSynchronousActs) no act changes
+ * the grid, so there is no need for tiles: the population is simply
+ * cut into chunks, which all run at once.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class ParallelStepper
+{
+    // The width and depth of a tile, in cells, unless told otherwise.
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    // Tiles narrower than this would let same-coloured tiles touch.
+    private static final int MIN_TILE_SIZE = 2;
+
+    // The number of tile colours, and so of phases per step.
+    private static final int COLOURS = 4;
+
+    // The number of entities acting together in a synchronous step.
+    private static final int CHUNK_SIZE = 256;
+
+    // The pool the tiles run on.
+    private final ForkJoinPool pool;
+
+    // The width and depth of a tile.
+    private final int tileSize;
+
+    // The number of tile rows and columns the field is cut into.
+    private int tileRows, tileCols;
+
+    // The tiles of each colour.
+    private int[][] tilesByColour;
+
+    // For each tile, the indexes into the population list of the
+    // entities that stand in it at the start of the step.
+    private int[][] members;
+    private int[] memberCounts;
+
+    // The newborns of each tile, merged in tile order after the step.
+    private List<List<Object>> newborn;
+
+    // The numbers of the chunks of a synchronous step, and the
+    // newborns of each chunk, merged in chunk order.
+    private int[] chunks = new int[0];
+    private final List<List<Object>> chunkNewborn = new ArrayList<>();
+
+    /**
+     * Create a stepper using the default tile size.
+     * @param threads The number of threads to act on.
+     */
+    public ParallelStepper(int threads)
+    {
+        this(threads, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Create a stepper.
+     * @param threads The number of threads to act on.
+     * @param tileSize The width and depth of a tile, in cells.
+     *                 Must be at least 2.
+     */
+    public ParallelStepper(int threads, int tileSize)
+    {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: " + threads);
+        }
+        if(tileSize < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("Tiles must be at least " + MIN_TILE_SIZE
+                                               + " cells wide: " + tileSize);
+        }
+        pool = new ForkJoinPool(threads);
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * @return The number of threads the stepper acts on.
+     */
+    public int getThreads()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Let every animal in the list act once.
+     * @param field The field the animals live in.
+     * @param animals The animals, all alive at the start of the step.
+     * @param newAnimals Receives the animals born during the step.
+     */
+    public void actAnimals(Field field, List<Animal> animals, List<Animal> newAnimals)
+    {
+        actAll(field, animals, newAnimals, Animal::getId, Animal::act);
+    }
+
+    /**
+     * Let every plant in the list act once.
+     * @param field The field the plants live in.
+     * @param plants The plants, all alive at the start of the step.
+     * @param newPlants Receives the plants born during the step.
+     */
+    public void actPlants(Field field, List<Plant> plants, List<Plant> newPlants)
+    {
+        actAll(field, plants, newPlants, Plant::getId, Plant::act);
+    }
+
+    /**
+     * Run a piece of work for each number from 0 to count - 1, all at
+     * once on the pool's threads, and wait for all of them to finish.
+     * @param count The number of pieces of work.
+     * @param work The work, given the number of the piece.
+     */
+    public void runEach(int count, IntConsumer work)
+    {
+        numberChunks(count);
+        pool.invoke(new TileTask(chunks, 0, count, work));
+    }
+
+    /**
+     * Release the stepper's threads.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Let every entity in a population act once, tile by tile.
+     * @param field The field the entities live in.
+     * @param population The entities to act.
+     * @param born Receives the entities born during the step.
+     * @param idOf Gives the id of an entity.
+     * @param act Makes an entity act, handing it a list for its young.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void actAll(Field field, List<T> population, List<T> born,
+                            ToIntFunction<T> idOf, BiConsumer<T, List<T>> act)
+    {
+        if(field.isSynchronous()) {
+            actInChunks(field, population, born, idOf, act);
+            return;
+        }
+        layOut(field);
+        sortIntoTiles(field, population, idOf);
+        for(int colour = 0; colour < COLOURS; colour++) {
+            int[] tiles = tilesByColour[colour];
+            pool.invoke(new TileTask(tiles, 0, tiles.length, tile -> {
+                List<T> young = (List<T>) (List<?>) newborn.get(tile);
+                int[] indexes = members[tile];
+                for(int i = 0; i < memberCounts[tile]; i++) {
+                    act.accept(population.get(indexes[i]), young);
+                }
+            }));
+        }
+        for(List<Object> young : newborn) {
+            born.addAll((List<T>) (List<?>) young);
+            young.clear();
+        }
+    }
+
+    /**
+     * Let every entity in a population act once in a synchronous step,
+     * chunk by chunk, all chunks at once.
+     * @param field The field the entities live in.
+     * @param population The entities to act.
+     * @param born Receives the entities born during the step.
+     * @param idOf Gives the id of an entity.
+     * @param act Makes an entity act, handing it a list for its young.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void actInChunks(Field field, List<T> population, List<T> born,
+                                 ToIntFunction<T> idOf, BiConsumer<T, List<T>> act)
+    {
+        int count = (population.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        numberChunks(count);
+        while(chunkNewborn.size() < count) {
+            chunkNewborn.add(new ArrayList<>());
+        }
+        pool.invoke(new TileTask(chunks, 0, count, chunk -> {
+            List<T> young = (List<T>) (List<?>) chunkNewborn.get(chunk);
+            int end = Math.min((chunk + 1) * CHUNK_SIZE, population.size());
+            for(int i = chunk * CHUNK_SIZE; i < end; i++) {
+                T entity = population.get(i);
+                field.startAct(idOf.applyAsInt(entity));
+                act.accept(entity, young);
+            }
+        }));
+        for(int chunk = 0; chunk < count; chunk++) {
+            List<Object> young = chunkNewborn.get(chunk);
+            born.addAll((List<T>) (List<?>) young);
+            young.clear();
+        }
+    }
+
+    /**
+     * Make sure there are numbers for at least the given count of chunks.
+     * @param count The number of chunks.
+     */
+    private void numberChunks(int count)
+    {
+        if(count > chunks.length) {
+            chunks = new int[Math.max(count, chunks.length * 2)];
+            for(int chunk = 0; chunk < chunks.length; chunk++) {
+                chunks[chunk] = chunk;
+            }
+        }
+    }
+
+    /**
+     * Work out the tiles for the field, unless they are already known.
+     * @param field The field to cut into tiles.
+     */
+    private void layOut(Field field)
+    {
+        int rows = (field.getDepth() + tileSize - 1) / tileSize;
+        int cols = (field.getWidth() + tileSize - 1) / tileSize;
+        if(rows == tileRows && cols == tileCols) {
+            return;
+        }
+        tileRows = rows;
+        tileCols = cols;
+        int tiles = rows * cols;
+        members = new int[tiles][];
+        memberCounts = new int[tiles];
+        newborn = new ArrayList<>(tiles);
+        int[] perColour = new int[COLOURS];
+        for(int tile = 0; tile < tiles; tile++) {
+            members[tile] = new int[16];
+            newborn.add(new ArrayList<>());
+            perColour[colourOf(tile)]++;
+        }
+        tilesByColour = new int[COLOURS][];
+        for(int colour = 0; colour < COLOURS; colour++) {
+            tilesByColour[colour] = new int[perColour[colour]];
+            perColour[colour] = 0;
+        }
+        for(int tile = 0; tile < tiles; tile++) {
+            int colour = colourOf(tile);
+            tilesByColour[colour][perColour[colour]++] = tile;
+        }
+    }
+
+    /**
+     * Record which tile every entity of the population stands in,
+     * keeping the order of the population within each tile.
+     * @param field The field the entities live in.
+     * @param population The entities.
+     * @param idOf Gives the id of an entity.
+     */
+    private <T> void sortIntoTiles(Field field, List<T> population, ToIntFunction<T> idOf)
+    {
+        EntityStore entities = field.getEntities();
+        Arrays.fill(memberCounts, 0);
+        for(int i = 0; i < population.size(); i++) {
+            int cell = entities.getCell(idOf.applyAsInt(population.get(i)));
+            if(cell == EntityStore.NO_CELL) {
+                continue;
+            }
+            int tile = (field.cellRow(cell) / tileSize) * tileCols
+                       + field.cellCol(cell) / tileSize;
+            int count = memberCounts[tile];
+            if(count == members[tile].length) {
+                members[tile] = Arrays.copyOf(members[tile], count * 2);
+            }
+            members[tile][count] = i;
+            memberCounts[tile] = count + 1;
+        }
+    }
+
+    /**
+     * @param tile A tile number.
+     * @return The colour of the tile, from 0 to 3.
+     */
+    private int colourOf(int tile)
+    {
+        int row = tile / tileCols;
+        int col = tile % tileCols;
+        return (row % 2) * 2 + col % 2;
+    }
+
+    /**
+     * Run a range of tiles, or of chunks, splitting it between the
+     * pool's threads.
+     */
+    private static class TileTask extends RecursiveAction
+    {
+        // Tasks are never serialized, but RecursiveAction is Serializable.
+        private static final long serialVersionUID = 1L;
+
+        // The work to do for one tile.
+        private final IntConsumer work;
+        // The tiles, and the range of them that this task covers.
+        private final int[] tiles;
+        private final int from, to;
+
+        /**
+         * Create a task for tiles[from] to tiles[to - 1].
+         */
+        TileTask(int[] tiles, int from, int to, IntConsumer work)
+        {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        /**
+         * Run the tiles, or split them in two if there is more than one.
+         */
+        protected void compute()
+        {
+            if(to - from == 1) {
+                work.accept(tiles[from]);
+            }
+            else if(to > from) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, from, middle, work),
+                          new TileTask(tiles, middle, to, work));
+            }
+        }
+    }
+}
@@ -1,6 +1,4 @@
 import java.util.List;
-import java.util.Random;
-import java.util.Iterator;
 /**
  * A simple model of a plankton.
  * Planktons age, move, breed, and die.
@@ -11,37 +9,12 @@ import java.util.Iterator;
  */
 public class Plankton extends Animal
 {
-    // Characteristics shared by all planktons (class variables).
+    // Characteristics shared by all planktons (class variables). Their
+    // life history and diet are in the field's SpeciesRules.
 
-    // The age at which a plankton can start to breed.
-    private static final int BREEDING_AGE = 2;
-    
-    // The age to which a plankton can live.
-    private static final int MAX_AGE = 8;
-    
-    // The likelihood of a plankton breeding.
-    private static final double BREEDING_PROBABILITY = 0.47;
-    
-    // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 3;
-    
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-    
-    // The food value of a single seaweed.
+    // The food value a new plankton's food level is drawn from.
     private static final int SEAWEED_FOOD_VALUE = 2;
     
-    // Individual characteristics (instance fields).
-    
-    // The plankton's age.
-    private int age;
-    
-    //distinguishes between male and female
-    private boolean isMale;
-    
-    // The fish's food level, which is increased by eating food.
-    private int foodLevel;
-    
     /**
      * Create a new plankton. A plankton may be created with age
      * zero (a new born) or with a random age.
@@ -53,16 +26,58 @@ public class Plankton extends Animal
      */
     public Plankton(boolean randomAge, Field field, Location location)
     {
-        super(field, location);
-        age = 0;
+        super(Species.PLANKTON, field, location);
+        start(randomAge);
+    }
+    
+    /**
+     * Recreate a plankton from a checkpoint. Its state is already in the
+     * field's entity store.
+     * 
+     * @param field The field currently occupied.
+     * @param id The plankton's id in the field's entity store.
+     */
+    public Plankton(Field field, int id)
+    {
+        super(field, id);
+    }
+
+    /**
+     * Return a newborn plankton at the given location, bringing a dead plankton
+     * from the field's pool back to life if there is one, so that no
+     * object has to be allocated.
+     * 
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn plankton.
+     */
+    public static Plankton newborn(Field field, Location location)
+    {
+        Plankton young = (Plankton) field.getEntities().reuse(Species.PLANKTON);
+        if(young == null) {
+            return new Plankton(false, field, location);
+        }
+        young.enter(Species.PLANKTON, location);
+        young.start(false);
+        return young;
+    }
+
+    /**
+     * Give a plankton that has just come to life its age, food level and
+     * sex.
+     * 
+     * @param randomAge If true, the plankton will have a random age.
+     */
+    private void start(boolean randomAge)
+    {
+        setAge(0);
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
-            foodLevel = rand.nextInt(SEAWEED_FOOD_VALUE);
+            setAge(nextInt(getField().getRules().getMaxAge(Species.PLANKTON)));
+            setFoodLevel(nextInt(SEAWEED_FOOD_VALUE));
         }
-        Random rd = new Random(); // creating Random object
-        isMale = rd.nextBoolean(); // distingushing between male and female
+        setMale(nextBoolean()); // distingushing between male and female
     }
-    
+
     /**
      * This is what the plankton does most of the time - it runs 
      * around. Sometimes it will breed or die of old age.
@@ -70,12 +85,11 @@ public class Plankton extends Animal
      */
     public void act(List<Animal> newPlanktons)
     {
-        incrementAge();
         //incrementHunger();
         if(isAlive()) {
             giveBirth(newPlanktons);            
             // Try to move into a free location.
-            Location newLocation = getField().freeAdjacentLocation(getLocation());
+            Location newLocation = getField().freeAdjacentLocation(getLocation(), nextInt(Field.MAX_ADJACENT));
             if(newLocation != null) {
                 setLocation(newLocation);
             }
@@ -86,28 +100,15 @@ public class Plankton extends Animal
         }
     }
 
-    /**
-     * Increase the age.
-     * This could result in the plankton's death.
-     */
-    private void incrementAge()
-    {
-        age++;  //increment the age 
-        //if the current age was grater than max age
-        if(age > MAX_AGE) {
-            setDead();//the plankton will be dead
-        }
-    }
-    
     /**
      *  Make this plankton more hungry. This could result in the plankton's death.
      */
     private void incrementHunger()
     {
-        foodLevel--; //decreasing food level of plankton by one
+        setFoodLevel(getFoodLevel() - 1); //decreasing food level of plankton by one
         //if the food level of plankton is less than or equal to 0
-        if(foodLevel <= 0) {
-            setDead();//the plankton will be dead
+        if(getFoodLevel() <= 0) {
+            setDead(EventRing.Type.STARVATION);//the plankton will be dead
         }
     }
     
@@ -121,11 +122,12 @@ public class Plankton extends Animal
         // New planktons are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int[] free = cellBuffer();
+        int freeCount = field.freeAdjacentCells(getLocation(), free, nextInt(Field.MAX_ADJACENT));
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Plankton young = new Plankton(false, field, loc);
+        for(int b = 0; b < births && b < freeCount; b++) {
+            Location loc = field.locationOf(free[b]);
+            Plankton young = newborn(field, loc);
             newPlanktons.add(young);
         }
     }
@@ -133,26 +135,13 @@ public class Plankton extends Animal
     /**
      * Look for fish adjacent to the current location.
      * Only the first live fish is eaten.
-     * plankton can only eat seaweed
+     * by default plankton only eat seaweed
      * @return Where food was found, or null if it wasn't.
      */
     private Location findFood()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object plant = field.getObjectAt(where);            
-            SeaWeed seaWeed = (SeaWeed) plant;
-            //if the adjacent seaweed was alive let the fish to eat it
-            if(seaWeed.isAlive()) { 
-                seaWeed.setDead();
-                foodLevel = SEAWEED_FOOD_VALUE;
-                return where;
-            }
-        }
-        return null;
+        //the plankton's diet is in the species rules
+        return eat(nextInt(Field.MAX_ADJACENT));
     }
     
     /**
@@ -163,8 +152,9 @@ public class Plankton extends Animal
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        SpeciesRules rules = getField().getRules();
+        if(canBreed() && nextDouble() <= rules.getBreedingProbability(Species.PLANKTON)) {
+            births = nextInt(rules.getMaxLitterSize(Species.PLANKTON)) + 1;
         }
         return births;
     }
@@ -175,6 +165,6 @@ public class Plankton extends Animal
      */
     private boolean canBreed()
     {
-        return age >= BREEDING_AGE;
+        return getAge() >= getField().getRules().getBreedingAge(Species.PLANKTON);
     }
 }
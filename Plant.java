@@ -2,6 +2,9 @@ import java.util.List;
 
 /**
  * A class representing shared characteristics of plants.
+ * The state of each plant - its age, food level, cell and random
+ * stream - is
+ * kept in the EntityStore of its field under the plant's id.
  * 
  * @author David J. Barnes and Michael Kölling
  * @author Amirali Koochaki . Marouane el Moubarik alaoui .Seyed Mohammad Reza Shahrestani
@@ -16,20 +19,57 @@ public abstract class Plant
     // The plant's field.
     private Field field;
 
-    // The plant's position in the field.
-    private Location location;
+    // The plant's id in the field's entity store.
+    private int id;
+
+    // Scratch space for neighbourhood queries. Plants on the same
+    // thread act one at a time, so each thread needs only one buffer.
+    private static final ThreadLocal<int[]> adjacent =
+        ThreadLocal.withInitial(() -> new int[Field.MAX_ADJACENT]);
 
     /**
      * Create a new plant at location in field.
      * 
+     * @param species The species of the plant.
      * @param field The field currently occupied.
      * @param location The location within the field.
      */
-    public Plant(Field field, Location location)
+    public Plant(Species species, Field field, Location location)
+    {
+        this.field = field;
+        enter(species, location);
+    }
+
+    /**
+     * Bring the plant to life at a location in its field: give it a
+     * new id, place it and start its random stream. A dead plant taken
+     * from the entity store's pool comes back to life this way.
+     * 
+     * @param species The species of the plant.
+     * @param location The location within the field.
+     */
+    protected void enter(Species species, Location location)
+    {
+        alive = true;
+        id = field.getEntities().allocate(this, species);
+        setLocation(location);
+        int cell = field.cellOf(location.getRow(), location.getCol());
+        field.getEntities().setRandomState(id, Randomizer.streamSeed(field.getSeed(), field.getStep(), cell));
+    }
+
+    /**
+     * Recreate a plant whose state is already in the field's entity
+     * store, such as after restoring a checkpoint.
+     * 
+     * @param field The field currently occupied.
+     * @param id The plant's id in the field's entity store.
+     */
+    protected Plant(Field field, int id)
     {
         alive = true;
         this.field = field;
-        setLocation(location); 
+        this.id = id;
+        field.getEntities().setEntity(id, this);
     }
 
     /**
@@ -49,16 +89,52 @@ public abstract class Plant
     }
 
     /**
-     * Indicate that the plant is no longer alive.
+     * Indicate that the plant is no longer alive, through overcrowding.
      * It is removed from the field.
      */
     protected void setDead()
     {
+        setDead(EventRing.Type.OVERCROWDING);
+    }
+
+    /**
+     * Indicate that the plant is no longer alive.
+     * It is removed from the field, and how it died is recorded for
+     * the simulation to report.
+     * @param cause How the plant died.
+     */
+    protected void setDead(EventRing.Type cause)
+    {
+        die(EventRing.fate(cause, null));
+    }
+
+    /**
+     * Indicate that the plant has been eaten. It is removed from the
+     * field like any dead plant, and counted as prey of its species.
+     * @param predator The species that ate it.
+     */
+    protected void setEaten(Species predator)
+    {
+        field.getEntities().recordPredation(id);
+        die(EventRing.fate(EventRing.Type.PREDATION, predator));
+    }
+
+    /**
+     * Remove the plant from the field and record how it died, unless
+     * it is already dead: the first cause of death is the one kept.
+     * @param fate How it died, as made by EventRing.fate.
+     */
+    private void die(int fate)
+    {
+        if(!alive) {
+            return;
+        }
         alive = false;
+        field.getEntities().setFate(id, fate, field.getEntities().getCell(id));
+        Location location = getLocation();
         if(location != null) {
             field.clear(location);
-            location = null;
-            field = null;
+            field.getEntities().setCell(id, EntityStore.NO_CELL);
         }
     }
 
@@ -68,7 +144,11 @@ public abstract class Plant
      */
     protected Location getLocation()
     {
-        return location;
+        int cell = field.getEntities().getCell(id);
+        if(cell == EntityStore.NO_CELL) {
+            return null;
+        }
+        return field.locationOf(cell);
     }
 
     /**
@@ -77,11 +157,94 @@ public abstract class Plant
      */
     protected void setLocation(Location newLocation)
     {
+        Location location = getLocation();
         if(location != null) {
             field.clear(location);
         }
-        location = newLocation;
-        field.place(this, newLocation);
+        field.place(id, newLocation);
+    }
+
+    /**
+     * Return the plant's id in the field's entity store.
+     * @return The plant's id.
+     */
+    protected int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Give the plant another id, to which its state has been moved
+     * (see Field.swapIds).
+     * @param id The plant's new id.
+     */
+    protected void setId(int id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return The plant's age, in steps.
+     */
+    protected int getAge()
+    {
+        return field.getStep() - field.getEntities().getBirthStep(id);
+    }
+
+    /**
+     * Set the plant's age. It grows a step older with every step from
+     * then on without being told.
+     * @param age The plant's new age.
+     */
+    protected void setAge(int age)
+    {
+        field.getEntities().setBirthStep(id, field.getStep() - age);
+    }
+
+    /**
+     * @return The plant's food level.
+     */
+    protected int getFoodLevel()
+    {
+        return field.getEntities().getFoodLevel(id);
+    }
+
+    /**
+     * @param foodLevel The plant's new food level.
+     */
+    protected void setFoodLevel(int foodLevel)
+    {
+        field.getEntities().setFoodLevel(id, foodLevel);
+    }
+
+    /**
+     * Draw an int from the plant's own random stream.
+     * @param bound The upper bound. Must be positive.
+     * @return An int between 0 (inclusive) and bound (exclusive).
+     */
+    protected int nextInt(int bound)
+    {
+        return Randomizer.toInt(field.getEntities().nextRandom(id), bound);
+    }
+
+    /**
+     * Draw a double from the plant's own random stream.
+     * @return A double between 0 (inclusive) and 1 (exclusive).
+     */
+    protected double nextDouble()
+    {
+        return Randomizer.toDouble(field.getEntities().nextRandom(id));
+    }
+
+    /**
+     * Return a buffer to hand to the field's neighbourhood queries,
+     * such as Field.adjacentCells. Its contents only stay valid
+     * until the next query.
+     * @return A buffer with room for Field.MAX_ADJACENT cells.
+     */
+    protected static int[] cellBuffer()
+    {
+        return adjacent.get();
     }
 
     /**
@@ -0,0 +1,351 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stream the population of a simulation to a file, one row per step:
+ * the step, then for every species its number, and how many were
+ * born, died and were eaten since the previous row.
+ *
+ * The simulation thread only copies a row into a bounded ring buffer;
+ * a background thread takes the rows out and writes them, so the
+ * simulation never waits for the disk and the exporter's memory stays
+ * the same however long the run. If the writer falls so far behind
+ * that the ring is full, rows are dropped and counted. The next row
+ * written then covers the births, deaths and predations of the
+ * dropped steps too.
+ *
+ * Rows are written either as CSV or in a compact binary format: a
+ * header (magic "OCNP", version, number of species, and each species'
+ * name as a length and UTF-8 bytes), then blocks of up to 1024 rows,
+ * each an int row count followed by every column as that many ints.
+ * All numbers are little-endian.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class PopulationExporter implements SimulatorObserver
+{
+    /**
+     * The formats rows can be written in.
+     */
+    public enum Format
+    {
+        CSV, BINARY
+    }
+
+    // The number of rows the ring holds unless told otherwise.
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // The first four bytes of a binary file, "OCNP".
+    private static final int BINARY_MAGIC = 0x4F434E50;
+
+    // The version of the binary format.
+    private static final int BINARY_VERSION = 1;
+
+    // The most rows in a block of a binary file.
+    private static final int BLOCK_ROWS = 1024;
+
+    // The values of each species in a row: number, births, deaths and
+    // predations.
+    private static final int VALUES_PER_SPECIES = 4;
+
+    // How long the writer sleeps when there is nothing to write.
+    private static final long IDLE_NANOS = 1000000;
+
+    // The format the rows are written in.
+    private final Format format;
+
+    // The file written to, and the buffer its bytes are gathered in.
+    private final FileChannel channel;
+    private final ByteBuffer out;
+
+    // The number of values in a row.
+    private final int rowLength;
+
+    // The rows not yet written, rowLength values each.
+    private final long[] ring;
+    private final int capacity;
+
+    // The number of rows ever put into the ring, and taken out of it.
+    private volatile long head;
+    private volatile long tail;
+
+    // The number of rows dropped because the ring was full.
+    private long dropped;
+
+    // The births, deaths and predations of each species up to the
+    // last row put into the ring.
+    private final long[] last;
+
+    // The rows of the binary block being gathered, column by column.
+    private final int[][] block;
+    private int blockRows;
+
+    // Takes the rows out of the ring and writes them.
+    private final Thread writer;
+
+    // Whether close has been called.
+    private volatile boolean closed;
+
+    // What went wrong in the writer, if anything.
+    private volatile IOException failure;
+
+    /**
+     * Create an exporter with a ring of the default size.
+     * @param fileName The file to write.
+     * @param format The format to write it in.
+     * @throws IOException If the file cannot be created.
+     */
+    public PopulationExporter(String fileName, Format format) throws IOException
+    {
+        this(fileName, format, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an exporter and start its writer.
+     * @param fileName The file to write.
+     * @param format The format to write it in.
+     * @param capacity The number of rows the ring holds.
+     * @throws IOException If the file cannot be created.
+     */
+    public PopulationExporter(String fileName, Format format, int capacity) throws IOException
+    {
+        this.format = format;
+        this.capacity = capacity;
+        rowLength = 1 + Species.count() * VALUES_PER_SPECIES;
+        ring = new long[capacity * rowLength];
+        last = new long[Species.count() * 3];
+        block = format == Format.BINARY ? new int[rowLength][BLOCK_ROWS] : null;
+        out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                                   StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writeHeader();
+        writer = new Thread(this::drain, "population-exporter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Put a row for the step into the ring, unless it is full.
+     * @param step Which iteration step it is.
+     * @param field The field of the simulation.
+     */
+    public void showStatus(int step, Field field)
+    {
+        if(closed) {
+            return;
+        }
+        if(head - tail == capacity) {
+            dropped++;
+            return;
+        }
+        EntityStore entities = field.getEntities();
+        int at = (int) (head % capacity) * rowLength;
+        ring[at++] = step;
+        for(int kind = 0; kind < Species.count(); kind++) {
+            Species species = Species.fromOrdinal(kind);
+            long births = entities.getBirths(species);
+            long deaths = entities.getDeaths(species);
+            long eaten = entities.getPredations(species);
+            ring[at++] = entities.count(species);
+            ring[at++] = since(births, last[kind * 3]);
+            ring[at++] = since(deaths, last[kind * 3 + 1]);
+            ring[at++] = since(eaten, last[kind * 3 + 2]);
+            last[kind * 3] = births;
+            last[kind * 3 + 1] = deaths;
+            last[kind * 3 + 2] = eaten;
+        }
+        head = head + 1;
+    }
+
+    /**
+     * Work out how much a running total has grown.
+     * @param now The total now.
+     * @param before The total at the previous row.
+     * @return The growth. If the total went down, the simulation was
+     *         reset and the whole total is new.
+     */
+    private static long since(long now, long before)
+    {
+        return now >= before ? now - before : now;
+    }
+
+    /**
+     * @param field The field of the simulation.
+     * @return Always true: the exporter never ends a run.
+     */
+    public boolean isViable(Field field)
+    {
+        return true;
+    }
+
+    /**
+     * @return The number of rows dropped because the ring was full.
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * Write the rows still in the ring and close the file.
+     * @throws IOException If a row could not be written.
+     */
+    public void close() throws IOException
+    {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The writer's loop: write rows as they come, until closed.
+     */
+    private void drain()
+    {
+        try {
+            while(true) {
+                if(tail < head) {
+                    writeRow((int) (tail % capacity) * rowLength);
+                    tail = tail + 1;
+                }
+                else if(closed) {
+                    break;
+                }
+                else {
+                    flush();
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+            if(format == Format.BINARY && blockRows > 0) {
+                writeBlock();
+            }
+            flush();
+        }
+        catch(IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Write the header of the file: the column names for CSV, the
+     * magic number, version and species names for binary.
+     */
+    private void writeHeader() throws IOException
+    {
+        if(format == Format.CSV) {
+            StringBuilder header = new StringBuilder("step");
+            for(int kind = 0; kind < Species.count(); kind++) {
+                String name = Species.fromOrdinal(kind).getName();
+                header.append(',').append(name)
+                      .append(',').append(name).append("_births")
+                      .append(',').append(name).append("_deaths")
+                      .append(',').append(name).append("_eaten");
+            }
+            header.append('\n');
+            out.put(header.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        else {
+            out.putInt(BINARY_MAGIC);
+            out.putInt(BINARY_VERSION);
+            out.putInt(Species.count());
+            for(int kind = 0; kind < Species.count(); kind++) {
+                byte[] name = Species.fromOrdinal(kind).getName().getBytes(StandardCharsets.UTF_8);
+                out.putInt(name.length);
+                out.put(name);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Write one row from the ring.
+     * @param at Where the row starts in the ring.
+     */
+    private void writeRow(int at) throws IOException
+    {
+        if(format == Format.CSV) {
+            for(int i = 0; i < rowLength; i++) {
+                if(out.remaining() < 21) {
+                    flush();
+                }
+                if(i > 0) {
+                    out.put((byte) ',');
+                }
+                putDigits(ring[at + i]);
+            }
+            if(!out.hasRemaining()) {
+                flush();
+            }
+            out.put((byte) '\n');
+        }
+        else {
+            for(int i = 0; i < rowLength; i++) {
+                block[i][blockRows] = (int) ring[at + i];
+            }
+            blockRows++;
+            if(blockRows == BLOCK_ROWS) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Write the gathered rows of the binary file as one block.
+     */
+    private void writeBlock() throws IOException
+    {
+        if(out.remaining() < 4) {
+            flush();
+        }
+        out.putInt(blockRows);
+        for(int[] column : block) {
+            for(int row = 0; row < blockRows; row++) {
+                if(out.remaining() < 4) {
+                    flush();
+                }
+                out.putInt(column[row]);
+            }
+        }
+        blockRows = 0;
+    }
+
+    /**
+     * Put the decimal digits of a number into the buffer.
+     * @param value The number, which is never negative.
+     */
+    private void putDigits(long value)
+    {
+        if(value >= 10) {
+            putDigits(value / 10);
+        }
+        out.put((byte) ('0' + value % 10));
+    }
+
+    /**
+     * Write what is in the buffer to the file.
+     */
+    private void flush() throws IOException
+    {
+        out.flip();
+        while(out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -1,10 +1,17 @@
 import java.util.Random;
 
 /**
- * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
- * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
+ * Provide control over the randomization of the simulation. By using the shared, fixed-seed
+ * randomizer, repeated runs will perform exactly the same (which helps with testing). Set
  * 'useShared' to false to get different random behaviour every time.
- * 
+ *
+ * The simulation itself does not draw from a shared generator. Every animal and plant has
+ * a random stream of its own, kept in the EntityStore, which starts from a state derived
+ * from the seed of the run, the step it was born in and its cell (see streamSeed). The
+ * streams are SplitMix64 generators: a draw adds a constant to a 64-bit state and mixes the
+ * result, so it needs no locking, and the numbers an entity sees do not depend on which
+ * thread runs it or when. The shared generator remains for code outside the simulation.
+ *
  * @author David J. Barnes and Michael Kölling
  * @author Amirali Koochaki . Marouane el Moubarik alaoui .Seyed Mohammad Reza Shahrestani
  * @version 21.02.2020 (2)
@@ -17,6 +24,8 @@ public class Randomizer
     private static final Random rand = new Random(SEED);
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // The amount a stream's state moves on by at every draw.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
 
     /**
      * Constructor for objects of class Randomizer
@@ -38,7 +47,77 @@ public class Randomizer
             return new Random();
         }
     }
-    
+
+    /**
+     * Return the seed that runs use unless they are given another.
+     * @return The default seed.
+     */
+    public static int getSeed()
+    {
+        return SEED;
+    }
+
+    /**
+     * Derive the starting state of a random stream from the seed of
+     * a run, a step and a cell. Different keys give unrelated streams.
+     * @param seed The seed of the run.
+     * @param step The step the stream starts in.
+     * @param cell The cell the stream belongs to.
+     * @return The starting state of the stream.
+     */
+    public static long streamSeed(long seed, int step, int cell)
+    {
+        long z = mix(seed + GOLDEN_GAMMA);
+        z = mix(z + step * GOLDEN_GAMMA);
+        return mix(z + cell * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Move a stream on by one draw.
+     * @param state The state of the stream.
+     * @return The state after the draw.
+     */
+    public static long advance(long state)
+    {
+        return state + GOLDEN_GAMMA;
+    }
+
+    /**
+     * Turn the state of a stream into 64 random bits.
+     * @param state The state of the stream after a draw.
+     * @return 64 random bits.
+     */
+    public static long mix(long state)
+    {
+        long z = state;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Turn 64 random bits into an int between 0 (inclusive) and
+     * bound (exclusive).
+     * @param bits 64 random bits.
+     * @param bound The upper bound. Must be positive.
+     * @return An int in the range [0, bound).
+     */
+    public static int toInt(long bits, int bound)
+    {
+        return (int) (((bits >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Turn 64 random bits into a double between 0 (inclusive) and
+     * 1 (exclusive).
+     * @param bits 64 random bits.
+     * @return A double in the range [0, 1).
+     */
+    public static double toDouble(long bits)
+    {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
     /**
      * Reset the randomization.
      * This will have no effect if randomization is not through
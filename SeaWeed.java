@@ -1,6 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
 
 /**
  * A simple model of a seaWeed.
@@ -12,33 +10,8 @@ import java.util.Random;
  */
 public class SeaWeed extends Plant
 {
-    // Characteristics shared by all seaWeeds (class variables).
-
-    // The age at which a seaWeed can start to breed.
-    private static final int BREEDING_AGE = 2;
-
-    // The age to which a seaWeed can live.
-    private static final int MAX_AGE = 10;
-
-    // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 7;
-
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-
-    // Individual characteristics (instance fields).
-
-    // The seaWeed's age.
-    private int age;
-
-    // The seaweed's food level, which is increased by eating food.
-    private int foodLevel;
-
-    //calling the DayNight Class
-    private DayNight dayNight;
-
-    //calling the Weather Class
-    private Weather weather;
+    // Characteristics shared by all seaWeeds (class variables) are
+    // in the field's SpeciesRules.
 
     //calling the Location Class
     private Location staticLocation;
@@ -52,14 +25,55 @@ public class SeaWeed extends Plant
      */
     public SeaWeed(boolean randomAge, Field field, Location location)
     {
-        super(field, location);
-        staticLocation = location;
-        age = 0;
+        super(Species.SEAWEED, field, location);
+        start(randomAge);
+    }
+
+    /**
+     * Recreate a seaWeed from a checkpoint. Its state is already in the
+     * field's entity store.
+     * 
+     * @param field The field currently occupied.
+     * @param id The seaWeed's id in the field's entity store.
+     */
+    public SeaWeed(Field field, int id)
+    {
+        super(field, id);
+        staticLocation = getLocation();
+    }
+
+    /**
+     * Return a newborn seaweed at the given location, bringing a dead seaweed
+     * from the field's pool back to life if there is one, so that no
+     * object has to be allocated.
+     * 
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn seaweed.
+     */
+    public static SeaWeed newborn(Field field, Location location)
+    {
+        SeaWeed young = (SeaWeed) field.getEntities().reuse(Species.SEAWEED);
+        if(young == null) {
+            return new SeaWeed(false, field, location);
+        }
+        young.enter(Species.SEAWEED, location);
+        young.start(false);
+        return young;
+    }
+
+    /**
+     * Give a seaweed that has just come to life its age.
+     * 
+     * @param randomAge If true, the seaweed will have a random age.
+     */
+    private void start(boolean randomAge)
+    {
+        staticLocation = getLocation();
+        setAge(0);
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
+            setAge(nextInt(getField().getRules().getMaxAge(Species.SEAWEED)));
         }
-        dayNight = new DayNight();
-        weather = new Weather();
     }
 
     /**
@@ -69,7 +83,6 @@ public class SeaWeed extends Plant
      */
     public void act(List<Plant> newSeaWeeds)
     {
-        incrementAge();
         //incrementHunger();
         if(isAlive()) {
             giveBirth(newSeaWeeds);            
@@ -88,23 +101,10 @@ public class SeaWeed extends Plant
      */
     private void incrementHunger()
     {
-        foodLevel--; //decreasing food level of fish by one
+        setFoodLevel(getFoodLevel() - 1); //decreasing food level of fish by one
         //if the food level of fish is less than or equal to 0
-        if(foodLevel <= 0) { 
-            setDead(); //the fish will be dead
-        }
-    }
-
-    /**
-     * Increase the age.
-     * This could result in the seaWeed's death.
-     */
-    private void incrementAge()
-    {
-        age++; //increment the age 
-        //if the current age was grater than max age 
-        if(age > MAX_AGE) {
-            setDead(); //the fish will be dead
+        if(getFoodLevel() <= 0) { 
+            setDead(EventRing.Type.STARVATION); //the fish will be dead
         }
     }
 
@@ -118,11 +118,12 @@ public class SeaWeed extends Plant
         // New seaWeeds are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int[] free = cellBuffer();
+        int freeCount = field.freeAdjacentCells(getLocation(), free, nextInt(Field.MAX_ADJACENT));
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            SeaWeed young = new SeaWeed(false, field, loc);
+        for(int b = 0; b < births && b < freeCount; b++) {
+            Location loc = field.locationOf(free[b]);
+            SeaWeed young = newborn(field, loc);
             newSeaWeeds.add(young);
         }
     }
@@ -135,10 +136,10 @@ public class SeaWeed extends Plant
     private Location findFood()
     {
         Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
+        int[] adjacent = cellBuffer();
+        int count = field.adjacentCells(getLocation(), adjacent, nextInt(Field.MAX_ADJACENT));
+        for(int i = 0; i < count; i++) {
+            int where = adjacent[i];
             Object plant = field.getObjectAt(where);
         }
         return null;
@@ -152,8 +153,11 @@ public class SeaWeed extends Plant
     private int breed()
     {
         int births = 0;
-        if(canBreed()) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        SpeciesRules rules = getField().getRules();
+        double probability = rules.getBreedingProbability(Species.SEAWEED);
+        //a seaweed that is sure to breed does not draw for it
+        if(canBreed() && (probability >= 1.0 || nextDouble() <= probability)) {
+            births = nextInt(rules.getMaxLitterSize(Species.SEAWEED)) + 1;
         }
         return births;
     }
@@ -165,6 +169,8 @@ public class SeaWeed extends Plant
      */
     private boolean canBreed()
     {
-        return dayNight.isDay() && weather.isCloudy() && age >= BREEDING_AGE;
+        Environment environment = getField().getEnvironment();
+        return environment.isDay() && environment.isCloudy()
+               && getAge() >= getField().getRules().getBreedingAge(Species.SEAWEED);
     }
 }
\ No newline at end of file
@@ -1,6 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
 
 /**
  * A simple model of a shark.
@@ -11,44 +9,13 @@ import java.util.Random;
  */
 public class Shark extends Animal
 {
-    // Characteristics shared by all sharks (class variables).
+    // Characteristics shared by all sharks (class variables). Their
+    // life history and diet are in the field's SpeciesRules.
 
-    // The age at which a shark can start to breed.
-    private static final int BREEDING_AGE = 15;
-
-    // The age to which a shark can live.
-    private static final int MAX_AGE = 120;
-
-    // The likelihood of a shark breeding.
-    private static final double BREEDING_PROBABILITY = 0.15;
-
-    // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 3;
-
-    // The food value of a single fish. 
+    // The food values a new shark's food level is made up from.
     private static final int FISH_FOOD_VALUE = 9;
-
-    //the food value of a single plankton
-    private static final int PLANKTON_FOOD_VALUE = 2;
-
-    // The food value of a single shrimp
     private static final int SHRIMP_FOOD_VALUE = 5;
 
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-
-    // Individual characteristics (instance fields).
-
-    // The shark's age.
-    private int age;
-    // The shark's food level, which is increased by eating food
-    private int foodLevel;
-
-    //distinguishes between male and female
-    private boolean isMale;
-
-    //calling the DayNight Class
-    private DayNight dayNight;
     /**
      * Create a shark. A shark can be created as a new born (age zero
      * and not hungry) or with a random age and food level.
@@ -60,18 +27,59 @@ public class Shark extends Animal
      */
     public Shark(boolean randomAge, Field field, Location location)
     {
-        super(field, location);
+        super(Species.SHARK, field, location);
+        start(randomAge);
+    }
+
+    /**
+     * Recreate a shark from a checkpoint. Its state is already in the
+     * field's entity store.
+     * 
+     * @param field The field currently occupied.
+     * @param id The shark's id in the field's entity store.
+     */
+    public Shark(Field field, int id)
+    {
+        super(field, id);
+    }
+
+    /**
+     * Return a newborn shark at the given location, bringing a dead shark
+     * from the field's pool back to life if there is one, so that no
+     * object has to be allocated.
+     * 
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn shark.
+     */
+    public static Shark newborn(Field field, Location location)
+    {
+        Shark young = (Shark) field.getEntities().reuse(Species.SHARK);
+        if(young == null) {
+            return new Shark(false, field, location);
+        }
+        young.enter(Species.SHARK, location);
+        young.start(false);
+        return young;
+    }
+
+    /**
+     * Give a shark that has just come to life its age, food level and
+     * sex.
+     * 
+     * @param randomAge If true, the shark will have a random age.
+     */
+    private void start(boolean randomAge)
+    {
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
-            foodLevel = rand.nextInt(FISH_FOOD_VALUE) + rand.nextInt(SHRIMP_FOOD_VALUE);
+            setAge(nextInt(getField().getRules().getMaxAge(Species.SHARK)));
+            setFoodLevel(nextInt(FISH_FOOD_VALUE) + nextInt(SHRIMP_FOOD_VALUE));
         }
         else {
-            age = 0;
-            foodLevel = FISH_FOOD_VALUE + SHRIMP_FOOD_VALUE;    
+            setAge(0);
+            setFoodLevel(FISH_FOOD_VALUE + SHRIMP_FOOD_VALUE);    
         }
-        dayNight = new DayNight();
-        Random rd = new Random(); // creating Random object
-        isMale = rd.nextBoolean(); // distingushing between male and female
+        setMale(nextBoolean()); // distingushing between male and female
     }
 
     /**
@@ -83,15 +91,16 @@ public class Shark extends Animal
      */
     public void act(List<Animal> newSharkes)
     {
-        incrementAge();
-        incrementHunger();
+        if(isAlive()) {
+            incrementHunger();
+        }
         if(isAlive()) {
             giveBirth(newSharkes);            
             // Move towards a source of food if found.
             Location newLocation = findFood();
             if(newLocation == null) { 
                 // No food found - try to move to a free location.
-                newLocation = getField().freeAdjacentLocation(getLocation());
+                newLocation = getField().freeAdjacentLocation(getLocation(), nextInt(Field.MAX_ADJACENT));
             }
             // See if it was possible to move.
             if(newLocation != null) {
@@ -104,69 +113,28 @@ public class Shark extends Animal
         }
     }
 
-    /**
-     * Increase the age. This could result in the shark's death.
-     */
-    private void incrementAge()
-    {
-        age++;//increment the age 
-        //if the current age was grater than max age 
-        if(age > MAX_AGE) {
-            setDead();//the shark will be dead
-        }
-    }
-
     /**
      * Make this shark more hungry. This could result in the shark's death.
      */
     private void incrementHunger()
     {
-        foodLevel--; //decreasing food level of fish by one
+        setFoodLevel(getFoodLevel() - 1); //decreasing food level of fish by one
         //if the food level of shark is less than or equal to 0
-        if(foodLevel <= 0) {
-            setDead();//the shark will be dead
+        if(getFoodLevel() <= 0) {
+            setDead(EventRing.Type.STARVATION);//the shark will be dead
         }
     }
 
     /**
      * Look for fish adjacent to the current location.
      * Only the first live fish is eaten.
-     * shark can eat plankton and shrimp only if there is 
-     * no whale around it
+     * by default a shark eats plankton and shrimp
      * @return Where food was found, or null if it wasn't.
      */
     private Location findFood()
     {
-        //check the animals and plants around the shark
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            boolean whaleEx = animal instanceof Whale;
-
-            //if the adjacent shrimp was alive and there isnt any whale around the shark let the shark to eat it 
-            if(animal instanceof Shrimp && !whaleEx) {            
-                Shrimp shrimp = (Shrimp) animal;
-                if(shrimp.isAlive()) { 
-                    shrimp.setDead();
-                    foodLevel = SHRIMP_FOOD_VALUE;
-                    return where;
-                }
-            }
-
-            //if the adjacent plankton was alive and there isnt any whale around the shark let the shark to eat it 
-            if(animal instanceof Plankton && !whaleEx) {           
-                Plankton plankton = (Plankton) animal;
-                if(plankton.isAlive()) { 
-                    plankton.setDead();
-                    foodLevel = PLANKTON_FOOD_VALUE;
-                    return where;
-                }
-            }
-        }
-        return null;
+        //the shark's diet is in the species rules
+        return eat(nextInt(Field.MAX_ADJACENT));
     }
 
     /**
@@ -179,11 +147,12 @@ public class Shark extends Animal
         // New sharkes are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int[] free = cellBuffer();
+        int freeCount = field.freeAdjacentCells(getLocation(), free, nextInt(Field.MAX_ADJACENT));
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Shark young = new Shark(false, field, loc);
+        for(int b = 0; b < births && b < freeCount; b++) {
+            Location loc = field.locationOf(free[b]);
+            Shark young = newborn(field, loc);
             newSharkes.add(young);
         }
     }
@@ -196,8 +165,9 @@ public class Shark extends Animal
     private int breed()
     {
         int births = 0;
-        if(dayNight.isDay() && canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {   //breeds only in day.
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        SpeciesRules rules = getField().getRules();
+        if(getField().getEnvironment().isDay() && canBreed() && nextDouble() <= rules.getBreedingProbability(Species.SHARK)) {   //breeds only in day.
+            births = nextInt(rules.getMaxLitterSize(Species.SHARK)) + 1;
         }
         return births;
     }
@@ -205,40 +175,10 @@ public class Shark extends Animal
     /**
      * A shark can breed if it has reached the breeding age.
      * @return true if the shark can breed, false otherwise.
-     * a shark can only breed if it is next to its opposite gender
      */
     private boolean canBreed()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            for (int i =0; i>= field.adjacentLocations(getLocation()).size(); i++)
-            {
-                //if the adjacent animal is a male shark 
-                if(animal instanceof Shark && isMale)
-                {
-                    //if the shark is female and is old enough to breed and the food level is grater than 2
-                    if (!isMale && age >= BREEDING_AGE && foodLevel>2)
-                    {
-                        return true; //the shark can breed
-                    }
-                }
-
-                //if the adjacent animal is a female shark
-                if(animal instanceof Shark && !isMale )
-                {
-                    //if the shark is male and is old enough to breed and the food level is grater than 2
-                    if (isMale && age >= BREEDING_AGE && foodLevel>2)
-                    {
-                        return true; //the shark can breed
-                    }
-                }
-            }
-        }
-        return age >= BREEDING_AGE;
+        return getAge() >= getField().getRules().getBreedingAge(Species.SHARK);
     }
 
     /**
@@ -246,6 +186,6 @@ public class Shark extends Animal
      */
     public int returnHunger()
     {
-        return foodLevel;
+        return getFoodLevel();
     }
 }
\ No newline at end of file
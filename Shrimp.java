@@ -1,6 +1,4 @@
 import java.util.List;
-import java.util.Random;
-import java.util.Iterator;
 
 /**
  * A simple model of a shrimp.
@@ -12,28 +10,8 @@ import java.util.Iterator;
  */
 public class Shrimp extends Animal
 {
-    // Characteristics shared by all shrimps (class variables).
-
-    // The age at which a shrimp can start to breed.
-    private static final int BREEDING_AGE = 5;
-    
-    // The age to which a shrimp can live.
-    private static final int MAX_AGE = 10;
-    
-    // The likelihood of a shrimp breeding.
-    private static final double BREEDING_PROBABILITY = 0.25;
-    
-    // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 3;
-    
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-    
-    //distinguishes between male and female
-    private boolean isMale;
-    
-    // The shrimp's age.
-    private int age;
+    // Characteristics shared by all shrimps (class variables) are
+    // in the field's SpeciesRules.
 
     /**
      * Create a new shrimp. A shrimp may be created with age
@@ -46,15 +24,56 @@ public class Shrimp extends Animal
      */
     public Shrimp(boolean randomAge, Field field, Location location)
     {
-        super(field, location);
-        age = 0;
+        super(Species.SHRIMP, field, location);
+        start(randomAge);
+    }
+    
+    /**
+     * Recreate a shrimp from a checkpoint. Its state is already in the
+     * field's entity store.
+     * 
+     * @param field The field currently occupied.
+     * @param id The shrimp's id in the field's entity store.
+     */
+    public Shrimp(Field field, int id)
+    {
+        super(field, id);
+    }
+
+    /**
+     * Return a newborn shrimp at the given location, bringing a dead shrimp
+     * from the field's pool back to life if there is one, so that no
+     * object has to be allocated.
+     * 
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn shrimp.
+     */
+    public static Shrimp newborn(Field field, Location location)
+    {
+        Shrimp young = (Shrimp) field.getEntities().reuse(Species.SHRIMP);
+        if(young == null) {
+            return new Shrimp(false, field, location);
+        }
+        young.enter(Species.SHRIMP, location);
+        young.start(false);
+        return young;
+    }
+
+    /**
+     * Give a shrimp that has just come to life its age and sex.
+     * 
+     * @param randomAge If true, the shrimp will have a random age.
+     */
+    private void start(boolean randomAge)
+    {
+        setAge(0);
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
+            setAge(nextInt(getField().getRules().getMaxAge(Species.SHRIMP)));
         }
-        Random rd = new Random();    // creating Random object
-        isMale = rd.nextBoolean();  // distingushing between male and female
+        setMale(nextBoolean());  // distingushing between male and female
     }
-    
+
     /**
      * This is what the shrimp does most of the time - it runs 
      * around. Sometimes it will breed or die of old age.
@@ -62,11 +81,10 @@ public class Shrimp extends Animal
      */
     public void act(List<Animal> newShrimps)
     {
-        incrementAge();
         if(isAlive()) {
             giveBirth(newShrimps);            
             // Try to move into a free location.
-            Location newLocation = getField().freeAdjacentLocation(getLocation());
+            Location newLocation = getField().freeAdjacentLocation(getLocation(), nextInt(Field.MAX_ADJACENT));
             if(newLocation != null) {
                 setLocation(newLocation);
             }
@@ -77,19 +95,6 @@ public class Shrimp extends Animal
         }
     }
 
-    /**
-     * Increase the age.
-     * This could result in the shrimp's death.
-     */
-    private void incrementAge()
-    {
-        age++; //increment the age 
-        //if the current age was grater than max age 
-        if(age > MAX_AGE) {
-            setDead(); //the shrimp will be dead
-        }
-    }
-    
     /**
      * Check whether or not this shrimp is to give birth at this step.
      * New births will be made into free adjacent locations.
@@ -100,11 +105,12 @@ public class Shrimp extends Animal
         // New shrimps are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int[] free = cellBuffer();
+        int freeCount = field.freeAdjacentCells(getLocation(), free, nextInt(Field.MAX_ADJACENT));
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Shrimp young = new Shrimp(false, field, loc);
+        for(int b = 0; b < births && b < freeCount; b++) {
+            Location loc = field.locationOf(free[b]);
+            Shrimp young = newborn(field, loc);
             newShrimps.add(young);
         }
     }
@@ -117,8 +123,9 @@ public class Shrimp extends Animal
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        SpeciesRules rules = getField().getRules();
+        if(canBreed() && nextDouble() <= rules.getBreedingProbability(Species.SHRIMP)) {
+            births = nextInt(rules.getMaxLitterSize(Species.SHRIMP)) + 1;
         }
         return births;
     }
@@ -126,40 +133,9 @@ public class Shrimp extends Animal
     /**
      * A shrimp can breed if it has reached the breeding age.
      * @return true if the shrimp can breed, false otherwise.
-     * a shrimp can only breed if it is next to its opposite gender
      */
     private boolean canBreed()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            // checks for opposite gender
-            for (int i =0; i>= field.adjacentLocations(getLocation()).size(); i++)
-            {
-                //if the adjacent animal is a male shrimp 
-                if(animal instanceof Shrimp && isMale)
-                {
-                    //if the shrimp is female and is old enough to breed
-                    if (!isMale && age >= BREEDING_AGE)
-                    {
-                        return true; //it can breed
-                    }
-                }
-                
-                //if the adjacent animal is a female shrimp 
-                if(animal instanceof Shrimp && !isMale)
-                {
-                    //if the shrimp is male and is old enough to breed
-                    if (isMale && age >= BREEDING_AGE)
-                    {
-                        return true; //it can breed
-                    }
-                }
-            }
-        }
-        return age >= BREEDING_AGE;
+        return getAge() >= getField().getRules().getBreedingAge(Species.SHRIMP);
     }
 }
\ No newline at end of file
@@ -1,7 +1,13 @@
-import java.util.Random;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.awt.Color;
 
 /**
@@ -15,30 +21,18 @@ import java.awt.Color;
 public class Simulator
 {
     // Constants representing configuration information for the simulation.
+
+    // The first four bytes of a checkpoint file, "OCEN".
+    private static final int CHECKPOINT_MAGIC = 0x4F43454E;
+
+    // The version of the checkpoint format.
+    private static final int CHECKPOINT_VERSION = 4;
     
     // The default width for the grid.
     private static final int DEFAULT_WIDTH = 150;
     
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 100;
-    
-    // The probability that a shark will be created in any given grid position.
-    private static final double SHARK_CREATION_PROBABILITY = 0.02;
-    
-    // The probability that a fish will be created in any given grid position.
-    private static final double FISH_CREATION_PROBABILITY = 0.1;    
-
-    // The probability that a plankton will be created in any given grid position.
-    private static final double PLANKTON_CREATION_PROBABILITY = 0.15;     
-
-    // The probability that a whale will be created in any given grid position.
-    private static final double WHALE_CREATION_PROBABILITY = 0.05; 
-
-    // The probability that a shrimp will be created in any given grid position.
-    private static final double SHRIMP_CREATION_PROBABILITY = 0.12;     
-
-    // The probability that a shrimp will be created in any given grid position.
-    private static final double SEAWEED_CREATION_PROBABILITY = 0.1;
 
     // List of animals in the field.
     private List<Animal> animals;
@@ -46,6 +40,11 @@ public class Simulator
     // List of plants in the field.
     private List<Plant> plants;
 
+    // The animals and plants born during a step, kept from step to step
+    // so that their arrays need not grow again.
+    private List<Animal> newAnimals;
+    private List<Plant> newPlants;
+
     //A varieble which stops the game 
     private boolean stop;
     // The current state of the field.
@@ -54,8 +53,28 @@ public class Simulator
     // The current step of the simulation.
     private int step;
 
-    // A graphical view of the simulation.
-    private SimulatorView view;
+    // What is shown the state of the simulation after every step.
+    private SimulatorObserver view;
+
+    // Further observers, such as exporters, shown every step as well.
+    private List<SimulatorObserver> observers;
+
+    // Runs the acts on several threads, or null to run them on this one.
+    private ParallelStepper stepper;
+
+    // Whether every act sees the field as it was at the start of the
+    // step, its changes being settled once all have acted.
+    private boolean synchronous;
+
+    // The ids of the animals and plants by the step they die of old
+    // age in, worked out when they are born.
+    private TimingWheel deaths;
+
+    // Measures the phases of every step, or null not to measure them.
+    private StepProfiler profiler;
+
+    // The births and deaths of every step, for subscribers to follow.
+    private EventRing events;
 
     /**
      * Construct a simulation field with default size.
@@ -71,6 +90,34 @@ public class Simulator
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width)
+    {
+        this(depth, width, Randomizer.getSeed(), null);
+    }
+
+    /**
+     * Create a simulation field with the given size, seed and observer.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed the run's random numbers derive from.
+     * @param observer What is shown the state of the simulation after
+     *                 every step, or null for the graphical view.
+     */
+    public Simulator(int depth, int width, long seed, SimulatorObserver observer)
+    {
+        this(depth, width, seed, SpeciesRules.getDefault(), observer);
+    }
+
+    /**
+     * Create a simulation field with the given size, seed, species
+     * rules and observer.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed the run's random numbers derive from.
+     * @param rules The rules the species live by.
+     * @param observer What is shown the state of the simulation after
+     *                 every step, or null for the graphical view.
+     */
+    public Simulator(int depth, int width, long seed, SpeciesRules rules, SimulatorObserver observer)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be greater than zero.");
@@ -78,24 +125,62 @@ public class Simulator
             depth = DEFAULT_DEPTH;
             width = DEFAULT_WIDTH;
         }
-        stop = false;
-        animals = new ArrayList<>(); 
-        plants = new ArrayList<>();
-        field = new Field(depth, width);
-        // Create a view of the state of each location in the field. 
-
-        view = new SimulatorView(depth, width, this);
-        view.setColor(Fish.class, new Color(255,165,0,255)); //set the colour of fish to orange
-        view.setColor(Shark.class, new Color(0,0,255,255));  //set the colour of shark to blue
-        view.setColor(Shrimp.class, new Color(255,0,0,255));  //set the colour of shrimp to red
-        view.setColor(Whale.class, new Color(255,192,203,255)); //set the colour of whale to pink
-        view.setColor(Plankton.class, new Color(255,255,0,255)); //set the colour of plankton to yellow 
-        view.setColor(SeaWeed.class, new Color(0,255,0,255)); //set the colour of sea weed to green
+        setUp(new Field(depth, width, seed, rules), observer);
 
         // Setup a valid starting point.
         reset();
     }
 
+    /**
+     * Create a simulation of a field that is already populated, such
+     * as one restored from a checkpoint. The lists are left empty.
+     * @param field The field.
+     * @param observer What is shown the state of the simulation after
+     *                 every step, or null for the graphical view.
+     */
+    private Simulator(Field field, SimulatorObserver observer)
+    {
+        setUp(field, observer);
+    }
+
+    /**
+     * Set up the lists and the observer of a simulation of a field.
+     * @param field The field.
+     * @param observer What is shown the state of the simulation after
+     *                 every step, or null for the graphical view.
+     */
+    private void setUp(Field field, SimulatorObserver observer)
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        stop = false;
+        animals = new ArrayList<>(); 
+        plants = new ArrayList<>();
+        newAnimals = new ArrayList<>();
+        newPlants = new ArrayList<>();
+        observers = new ArrayList<>();
+        this.field = field;
+        SpeciesRules rules = field.getRules();
+        int longestLife = 0;
+        for(int kind = 0; kind < Species.count(); kind++) {
+            longestLife = Math.max(longestLife, rules.getMaxAge(Species.fromOrdinal(kind)));
+        }
+        deaths = new TimingWheel(longestLife + 2);
+        events = new EventRing();
+        if(observer == null) {
+            // Create a view of the state of each location in the field. 
+            SimulatorView gui = new SimulatorView(depth, width, this);
+            gui.setColor(Species.FISH, new Color(255,165,0,255)); //set the colour of fish to orange
+            gui.setColor(Species.SHARK, new Color(0,0,255,255));  //set the colour of shark to blue
+            gui.setColor(Species.SHRIMP, new Color(255,0,0,255));  //set the colour of shrimp to red
+            gui.setColor(Species.WHALE, new Color(255,192,203,255)); //set the colour of whale to pink
+            gui.setColor(Species.PLANKTON, new Color(255,255,0,255)); //set the colour of plankton to yellow 
+            gui.setColor(Species.SEAWEED, new Color(0,255,0,255)); //set the colour of sea weed to green
+            observer = gui;
+        }
+        view = observer;
+    }
+
     /**
      * Run the simulation from its current state for a reasonably long period,
      * (2000 steps).
@@ -129,101 +214,366 @@ public class Simulator
         // its a if statment which stops the game 
         if(!stop){   
             step++;
-            // Provide space for newborn animals.
-            List<Animal> newAnimals = new ArrayList<>(); 
-
-            // Provide space for newborn plants.
-            List<Plant> newPlants = new ArrayList<>();
-
-            // Let all animals act.
-            for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
-                Animal animal = it.next();
-                animal.act(newAnimals);
-                if(! animal.isAlive()) {
-                    animal.setDead();
+            field.setStep(step);
+            StepProfiler profiler = this.profiler;
+            if(profiler != null) {
+                profiler.startStep(step);
+            }
+            // Whatever has grown too old dies before anything acts.
+            deaths.expire(step, this::dieOfAge);
+            // Provide space for newborn animals and plants.
+            newAnimals.clear();
+            newPlants.clear();
+            if(profiler != null) {
+                profiler.endPhase(StepProfiler.Phase.AGE);
+            }
 
+            boolean synchronous = this.synchronous;
+            if(synchronous) {
+                field.startSynchronousActs();
+            }
+            if(stepper != null) {
+                // Let the animals, then the plants, act tile by tile,
+                // or in chunks if the update is synchronous. Newborns
+                // are renumbered once they have, from the ids free now.
+                field.getEntities().markIds();
+                stepper.actAnimals(field, animals, newAnimals);
+                if(profiler != null) {
+                    profiler.endPhase(StepProfiler.Phase.ANIMALS);
+                }
+                stepper.actPlants(field, plants, newPlants);
+                if(profiler != null) {
+                    profiler.endPhase(StepProfiler.Phase.PLANTS);
                 }
             }
-            // Let all plants act.
-            for(Iterator<Plant> it = plants.iterator(); it.hasNext(); ) {
-                Plant plant = it.next();
-                plant.act(newPlants);
-                if(! plant.isAlive()) {
-                    it.remove();
+            else if(profiler != null) {
+                // As below, putting every act down to its species.
+                EntityStore entities = field.getEntities();
+                for(int i = 0; i < animals.size(); i++) {
+                    Animal animal = animals.get(i);
+                    Species species = entities.getSpecies(animal.getId());
+                    if(synchronous) {
+                        field.startAct(animal.getId());
+                    }
+                    animal.act(newAnimals);
+                    profiler.endAct(species);
                 }
+                profiler.endPhase(StepProfiler.Phase.ANIMALS);
+                for(int i = 0; i < plants.size(); i++) {
+                    Plant plant = plants.get(i);
+                    Species species = entities.getSpecies(plant.getId());
+                    if(synchronous) {
+                        field.startAct(plant.getId());
+                    }
+                    plant.act(newPlants);
+                    profiler.endAct(species);
+                }
+                profiler.endPhase(StepProfiler.Phase.PLANTS);
+            }
+            else {
+                // Let all animals act.
+                for(int i = 0; i < animals.size(); i++) {
+                    if(synchronous) {
+                        field.startAct(animals.get(i).getId());
+                    }
+                    animals.get(i).act(newAnimals);
+                }
+                // Let all plants act.
+                for(int i = 0; i < plants.size(); i++) {
+                    if(synchronous) {
+                        field.startAct(plants.get(i).getId());
+                    }
+                    plants.get(i).act(newPlants);
+                }
+            }
+            if(synchronous) {
+                // Settle what the acts claimed.
+                field.resolveSynchronousActs(stepper);
+                if(profiler != null) {
+                    profiler.endPhase(StepProfiler.Phase.RESOLVE);
+                }
+            }
+
+            if(stepper != null) {
+                renumberNewborns();
+            }
+
+            // Drop everything that died during this step.
+            removeDead();
+            if(profiler != null) {
+                profiler.endPhase(StepProfiler.Phase.REMOVE);
             }
 
             // Add the newly born animals and plants to the main lists.
-            animals.addAll(newAnimals);
-            plants.addAll(newPlants);
+            // addAll would copy the lists into a new array first. Those
+            // that died in the step need no death by old age.
+            for(int i = 0; i < newAnimals.size(); i++) {
+                animals.add(newAnimals.get(i));
+                if(newAnimals.get(i).isAlive()) {
+                    scheduleDeath(newAnimals.get(i).getId());
+                }
+                reportBirth(newAnimals.get(i).getId());
+            }
+            for(int i = 0; i < newPlants.size(); i++) {
+                plants.add(newPlants.get(i));
+                if(newPlants.get(i).isAlive()) {
+                    scheduleDeath(newPlants.get(i).getId());
+                }
+                reportBirth(newPlants.get(i).getId());
+            }
+            if(profiler != null) {
+                profiler.endPhase(StepProfiler.Phase.MERGE);
+            }
 
             //returns the step and field to the SimulatorView Class
             view.showStatus(step, field);
+            if(profiler != null) {
+                profiler.endPhase(StepProfiler.Phase.VIEW);
+            }
+            for(int i = 0; i < observers.size(); i++) {
+                observers.get(i).showStatus(step, field);
+            }
+            if(profiler != null) {
+                profiler.endPhase(StepProfiler.Phase.OBSERVERS);
+                profiler.endStep(animals.size(), plants.size());
+            }
+        }
+    }
+
+    /**
+     * Give the animals and plants born in this step the ids they would
+     * have got had they been born one after another, in the order of
+     * the newborn lists. The stepper's threads hand out the same ids
+     * between them, but in whatever order they are scheduled; this way
+     * the ids, and with them checkpoints and events, are the same for
+     * every run with the same seed and number of threads.
+     */
+    private void renumberNewborns()
+    {
+        EntityStore entities = field.getEntities();
+        int born = 0;
+        for(int i = 0; i < newAnimals.size(); i++) {
+            renumber(newAnimals.get(i).getId(), entities.idSinceMark(born++));
+        }
+        for(int i = 0; i < newPlants.size(); i++) {
+            renumber(newPlants.get(i).getId(), entities.idSinceMark(born++));
         }
     }
 
+    /**
+     * Move a newborn to another id, and the newborn that has that id
+     * to the newborn's.
+     * @param id The newborn's id.
+     * @param wanted The id it should have.
+     */
+    private void renumber(int id, int wanted)
+    {
+        if(id == wanted) {
+            return;
+        }
+        EntityStore entities = field.getEntities();
+        field.swapIds(id, wanted);
+        setId(entities.getEntity(wanted), wanted);
+        setId(entities.getEntity(id), id);
+    }
+
+    /**
+     * Tell an animal or plant its new id.
+     * @param entity The animal or plant.
+     * @param id Its id.
+     */
+    private static void setId(Object entity, int id)
+    {
+        if(entity instanceof Animal) {
+            ((Animal) entity).setId(id);
+        }
+        else {
+            ((Plant) entity).setId(id);
+        }
+    }
+
+    /**
+     * Schedule the death by old age of every living animal and plant.
+     */
+    private void scheduleDeaths()
+    {
+        for(int i = 0; i < animals.size(); i++) {
+            if(animals.get(i).isAlive()) {
+                scheduleDeath(animals.get(i).getId());
+            }
+        }
+        for(int i = 0; i < plants.size(); i++) {
+            if(plants.get(i).isAlive()) {
+                scheduleDeath(plants.get(i).getId());
+            }
+        }
+    }
+
+    /**
+     * Schedule the death by old age of an animal or plant.
+     * @param id The entity's id.
+     */
+    private void scheduleDeath(int id)
+    {
+        deaths.schedule(id, deathStep(id));
+    }
+
+    /**
+     * Let an animal or plant die of old age, if it is still alive and
+     * still due to die in this step. Its id may have been handed on to
+     * something born later, which will have a death step of its own.
+     * @param id The entity's id.
+     */
+    private void dieOfAge(int id)
+    {
+        EntityStore entities = field.getEntities();
+        if(entities.getCell(id) == EntityStore.NO_CELL || deathStep(id) != step) {
+            return;
+        }
+        Object entity = entities.getEntity(id);
+        if(entity instanceof Animal) {
+            ((Animal) entity).setDead(EventRing.Type.OLD_AGE);
+        }
+        else {
+            ((Plant) entity).setDead(EventRing.Type.OLD_AGE);
+        }
+    }
+
+    /**
+     * Publish the birth of an animal or plant born in this step. If it
+     * has already died, its death is published with it, as it will
+     * not be dropped from its list until the next step.
+     * @param id The entity's id.
+     */
+    private void reportBirth(int id)
+    {
+        EntityStore entities = field.getEntities();
+        int cell = entities.getCell(id);
+        if(cell != EntityStore.NO_CELL) {
+            events.publish(EventRing.Type.BIRTH, step, id, entities.getSpecies(id), cell, null);
+        }
+        else {
+            events.publish(EventRing.Type.BIRTH, step, id, entities.getSpecies(id),
+                           entities.getDeathCell(id), null);
+            reportDeath(id);
+        }
+    }
+
+    /**
+     * Publish the death of an animal or plant, unless it has already
+     * been published.
+     * @param id The entity's id.
+     */
+    private void reportDeath(int id)
+    {
+        EntityStore entities = field.getEntities();
+        int fate = entities.getFate(id);
+        if(fate != 0) {
+            events.publish(EventRing.causeOf(fate), step, id, entities.getSpecies(id),
+                           entities.getDeathCell(id), EventRing.predatorOf(fate));
+            entities.setFate(id, 0, EntityStore.NO_CELL);
+        }
+    }
+
+    /**
+     * @param id An entity's id.
+     * @return The first step in which the entity is older than its
+     *         species can live.
+     */
+    private int deathStep(int id)
+    {
+        EntityStore entities = field.getEntities();
+        return entities.getBirthStep(id) + field.getRules().getMaxAge(entities.getSpecies(id)) + 1;
+    }
+
+    /**
+     * Remove the animals and plants that are no longer alive.
+     * Whatever died this step - of age, hunger, overcrowding or by
+     * being eaten - is compacted out of its list in a single pass,
+     * so the lists never hold more entries than there are cells in
+     * the field, however long the simulation runs.
+     * This is also where the deaths are published and the ids of the
+     * dead are handed back to the field's entity store: nothing refers
+     * to them after this point.
+     */
+    private void removeDead()
+    {
+        EntityStore entities = field.getEntities();
+        int alive = 0;
+        for(int i = 0; i < animals.size(); i++) {
+            Animal animal = animals.get(i);
+            if(animal.isAlive()) {
+                animals.set(alive++, animal);
+            }
+            else {
+                reportDeath(animal.getId());
+                entities.release(animal.getId());
+            }
+        }
+        animals.subList(alive, animals.size()).clear();
+
+        alive = 0;
+        for(int i = 0; i < plants.size(); i++) {
+            Plant plant = plants.get(i);
+            if(plant.isAlive()) {
+                plants.set(alive++, plant);
+            }
+            else {
+                reportDeath(plant.getId());
+                entities.release(plant.getId());
+            }
+        }
+        plants.subList(alive, plants.size()).clear();
+    }
+
     /**
      * Reset the simulation to a starting position.
      */
     public void reset()
     {
         step = 0;
+        field.setStep(step);
         animals.clear();
         plants.clear();
+        deaths.clear();
         populate();
+        scheduleDeaths();
 
         // Show the starting state in the view.
         //returns the step and field to the SimulatorView Class
         view.showStatus(step, field);
-
+        for(int i = 0; i < observers.size(); i++) {
+            observers.get(i).showStatus(step, field);
+        }
     }
 
     /**
      * Randomly populate the field with all animals and plants.
+     * The draws come from a generator of their own, seeded from the
+     * field's seed, so the starting state depends on nothing else.
      */
     private void populate()
     {
-        Random rand = Randomizer.getRandom();
+        SplittableRandom rand = new SplittableRandom(Randomizer.streamSeed(field.getSeed(), -1, 0));
+        SpeciesRules rules = field.getRules();
         field.clear();
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                //populates the field with sharks
-                if(rand.nextDouble() <= SHARK_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Shark shark = new Shark(true, field, location);
-                    animals.add(shark);
-                }
-                //populates the field with fish
-                else if(rand.nextDouble() <= FISH_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Fish fish = new Fish(true, field, location);
-                    animals.add(fish);
-                }
-                //populates the field with palnktons
-                else if(rand.nextDouble() <= PLANKTON_CREATION_PROBABILITY){
-                    Location location = new Location(row, col);
-                    Plankton plankton = new Plankton(true, field, location);
-                    animals.add(plankton);
-                }
-                //populates the field with whales
-                else if(rand.nextDouble() <= WHALE_CREATION_PROBABILITY){
-                    Location location = new Location(row, col);
-                    Whale whale = new Whale(true, field, location);
-                    animals.add(whale);
-                }
-                //populates the field with shrimps
-                else if(rand.nextDouble() <= SHRIMP_CREATION_PROBABILITY){
-                    Location location = new Location(row, col);
-                    Shrimp shrimp = new Shrimp(true, field, location);
-                    animals.add(shrimp);
+                // The species are tried in order, and the first whose
+                // draw succeeds gets the cell.
+                for(int kind = 0; kind < Species.count(); kind++) {
+                    Species species = Species.fromOrdinal(kind);
+                    if(rand.nextDouble() <= rules.getCreationProbability(species)) {
+                        Object entity = species.create(true, field, field.locationAt(row, col));
+                        if(entity instanceof Animal) {
+                            animals.add((Animal) entity);
+                        }
+                        else {
+                            plants.add((Plant) entity);
+                        }
+                        break;
+                    }
                 }
-                //populates the field with seaweed
-                else if(rand.nextDouble() <= SEAWEED_CREATION_PROBABILITY){
-                    Location location = new Location(row, col);
-                    SeaWeed seaWeed = new SeaWeed(true, field, location);
-                    plants.add(seaWeed);
-                }
-
                 // else leave the location empty.
             }
         }
@@ -244,6 +594,77 @@ public class Simulator
         }
     }
 
+    /**
+     * Choose how many threads the animals and plants act on.
+     * With more than one thread the field is cut into tiles which
+     * act in parallel (see ParallelStepper). Runs are reproducible
+     * whatever the number of threads, but tiled runs differ from runs
+     * on one thread, where everything acts in population order.
+     * @param threads The number of threads; 1 to act on the calling thread.
+     */
+    public void setThreads(int threads)
+    {
+        if(stepper != null) {
+            stepper.shutdown();
+            stepper = null;
+        }
+        if(threads > 1) {
+            stepper = new ParallelStepper(threads);
+        }
+    }
+
+    /**
+     * Choose how the acts of a step change the field. Normally every
+     * act changes it at once, so what one animal does depends on what
+     * those before it in the population did. In a synchronous update
+     * every act sees the field as it was at the start of the step and
+     * only claims the changes it would make; the claims are settled
+     * once all have acted (see NextGrid). Synchronous runs are the
+     * same whatever the number of threads, and differ from both other
+     * kinds of run.
+     * @param synchronous true for synchronous updates.
+     */
+    public void setSynchronous(boolean synchronous)
+    {
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * @return true if the acts of a step update the field synchronously.
+     */
+    public boolean isSynchronous()
+    {
+        return synchronous;
+    }
+
+    /**
+     * @return The ring the births and deaths of every step are
+     *         published to once the step is over. Subscribe to it to
+     *         follow them.
+     */
+    public EventRing getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * Measure the time and allocations of the phases of every step
+     * from now on (see StepProfiler).
+     * @param profiler The profiler, or null to stop measuring.
+     */
+    public void setProfiler(StepProfiler profiler)
+    {
+        this.profiler = profiler;
+    }
+
+    /**
+     * @return The profiler measuring the steps, or null if there is none.
+     */
+    public StepProfiler getProfiler()
+    {
+        return profiler;
+    }
+
     /**
      * By calling this method, the simulation stops
      */
@@ -251,4 +672,240 @@ public class Simulator
     {
         stop = true;
     }
+
+    /**
+     * Show the state of the simulation to another observer after
+     * every step, besides the one it was created with. Only that one
+     * decides whether the simulation is still viable.
+     * @param observer The observer to add.
+     */
+    public void addObserver(SimulatorObserver observer)
+    {
+        observers.add(observer);
+    }
+
+    /**
+     * Write the whole state of the simulation to a file, so that it
+     * can be resumed later with restore. This must be called between
+     * steps.
+     *
+     * The file starts with a magic number and a format version, then
+     * holds the field (see Field.writeTo) and the ids of the animals
+     * and of the plants in the order they act, negated for those that
+     * have died since the last compaction. Numbers are
+     * little-endian and the columns of the entity store are written
+     * whole, so the file is written and read through a memory mapping.
+     * @param fileName The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void saveCheckpoint(String fileName) throws IOException
+    {
+        long size = 4 + 4 + 4 + field.checkpointSize()
+                    + 4 + 4L * animals.size() + 4 + 4L * plants.size();
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("Checkpoint too large for one mapping: " + size + " bytes");
+        }
+        try(FileChannel channel = FileChannel.open(Paths.get(fileName),
+                                                   StandardOpenOption.CREATE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING,
+                                                   StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(CHECKPOINT_MAGIC);
+            out.putInt(CHECKPOINT_VERSION);
+            out.putInt(step);
+            field.writeTo(out);
+            out.putInt(animals.size());
+            for(Animal animal : animals) {
+                out.putInt(animal.isAlive() ? animal.getId() : -animal.getId());
+            }
+            out.putInt(plants.size());
+            for(Plant plant : plants) {
+                out.putInt(plant.isAlive() ? plant.getId() : -plant.getId());
+            }
+            out.force();
+        }
+    }
+
+    /**
+     * Resume a simulation from a file written by saveCheckpoint. It
+     * goes on exactly as the simulation that wrote the file would have.
+     * @param fileName The file to read.
+     * @param observer What is shown the state of the simulation after
+     *                 every step, or null for the graphical view.
+     * @return The simulation.
+     * @throws IOException If the file cannot be read or is not a
+     *                     checkpoint of this version.
+     */
+    public static Simulator restore(String fileName, SimulatorObserver observer) throws IOException
+    {
+        ByteBuffer in;
+        try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        if(in.remaining() < 12 || in.getInt() != CHECKPOINT_MAGIC) {
+            throw new IOException("Not a checkpoint: " + fileName);
+        }
+        int version = in.getInt();
+        if(version != CHECKPOINT_VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version + ": " + fileName);
+        }
+        int step = in.getInt();
+        Field field = Field.readFrom(in);
+        Simulator simulator = new Simulator(field, observer);
+        simulator.step = step;
+        int animalCount = in.getInt();
+        for(int i = 0; i < animalCount; i++) {
+            int id = in.getInt();
+            Animal animal = (Animal) recreate(field, Math.abs(id));
+            if(id < 0) {
+                // Born and eaten in the same step; it has no cell, and
+                // its death was published before the checkpoint.
+                animal.setDead();
+                field.getEntities().setFate(animal.getId(), 0, EntityStore.NO_CELL);
+            }
+            simulator.animals.add(animal);
+        }
+        int plantCount = in.getInt();
+        for(int i = 0; i < plantCount; i++) {
+            int id = in.getInt();
+            Plant plant = (Plant) recreate(field, Math.abs(id));
+            if(id < 0) {
+                plant.setDead();
+                field.getEntities().setFate(plant.getId(), 0, EntityStore.NO_CELL);
+            }
+            simulator.plants.add(plant);
+        }
+        simulator.scheduleDeaths();
+        simulator.view.showStatus(step, field);
+        return simulator;
+    }
+
+    /**
+     * Recreate the animal or plant whose state is in the field's
+     * entity store under the given id.
+     * @param field The field.
+     * @param id The entity's id.
+     * @return The animal or plant.
+     */
+    private static Object recreate(Field field, int id)
+    {
+        return field.getEntities().getSpecies(id).recreate(field, id);
+    }
+
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The number of animals in the population list. Between
+     *         steps, the dead have all been removed from it.
+     */
+    public int getAnimalCount()
+    {
+        return animals.size();
+    }
+
+    /**
+     * @return The number of plants in the population list. Between
+     *         steps, the dead have all been removed from it.
+     */
+    public int getPlantCount()
+    {
+        return plants.size();
+    }
+
+    /**
+     * @return The field of the simulation.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * Run a simulation without a display and print its population.
+     * The arguments are, in order and all optional: the width and
+     * depth of the field, the number of steps, the seed, the number
+     * of threads and a file to export the population of every step
+     * to, as CSV if its name ends in .csv and in binary otherwise.
+     * The species rules are read from the file named by the system
+     * property "rules", if it is set (see SpeciesRules). If the system
+     * property "profile" is set, the phases of every step are measured
+     * and printed every that many steps (see StepProfiler). If the
+     * system property "events" is set, every birth and death is
+     * recorded to the CSV file it names (see EventRecorder).
+     * @param args The command line arguments.
+     * @throws IOException If the rules cannot be read or the population
+     *                     cannot be exported.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : Randomizer.getSeed();
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+        String rulesFile = System.getProperty("rules");
+        SpeciesRules rules = rulesFile != null ? SpeciesRules.load(rulesFile) : SpeciesRules.getDefault();
+
+        StatsObserver stats = new StatsObserver(System.out, 100);
+        Simulator simulator = new Simulator(depth, width, seed, rules, stats);
+        simulator.setThreads(threads);
+        String profile = System.getProperty("profile");
+        if(profile != null) {
+            simulator.setProfiler(new StepProfiler(System.out, Integer.parseInt(profile)));
+        }
+        simulator.setSynchronous(Boolean.getBoolean("synchronous"));
+        String eventsFile = System.getProperty("events");
+        EventRecorder recorder = eventsFile != null ? new EventRecorder(simulator.getEvents(), eventsFile) : null;
+        PopulationExporter exporter = null;
+        if(args.length > 5) {
+            exporter = new PopulationExporter(args[5], args[5].endsWith(".csv")
+                                              ? PopulationExporter.Format.CSV
+                                              : PopulationExporter.Format.BINARY);
+            simulator.addObserver(exporter);
+        }
+        long start = System.nanoTime();
+        simulator.simulate(steps);
+        long elapsed = System.nanoTime() - start;
+        simulator.setThreads(1);
+        if(recorder != null) {
+            recorder.close();
+            if(recorder.getDropped() > 0) {
+                System.out.println("Events dropped by the recorder: " + recorder.getDropped());
+            }
+        }
+        if(exporter != null) {
+            exporter.close();
+            if(exporter.getDropped() > 0) {
+                System.out.println("Rows dropped by the exporter: " + exporter.getDropped());
+            }
+        }
+
+        int done = simulator.getStep();
+        System.out.println("Ran " + done + " steps of a " + width + "x" + depth
+                           + " field in " + elapsed / 1000000 + " ms ("
+                           + (long) (done * 1e9 / Math.max(elapsed, 1)) + " steps/s)");
+        System.out.println("Population: " + stats.getPopulationDetails(simulator.getField()));
+        EntityStore entities = simulator.getField().getEntities();
+        long births = 0;
+        long reused = 0;
+        for(int kind = 0; kind < Species.count(); kind++) {
+            births += entities.getBirths(Species.fromOrdinal(kind));
+            reused += entities.getReused(Species.fromOrdinal(kind));
+        }
+        System.out.println("Births: " + births + ", of which " + reused
+                           + " reused the object of a dead animal or plant");
+        if(simulator.getProfiler() != null) {
+            System.out.println("Mean step: " + simulator.getProfiler().snapshot());
+        }
+    }
 }
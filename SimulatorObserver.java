@@ -0,0 +1,26 @@
+
+/**
+ * Something that is shown the state of a simulation after every step.
+ * The graphical SimulatorView is one; NullObserver and StatsObserver
+ * let the simulation run without a display, for example on a machine
+ * with no screen.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public interface SimulatorObserver
+{
+    /**
+     * Show the current status of the field.
+     * @param step Which iteration step it is.
+     * @param field The field whose status is to be shown.
+     */
+    void showStatus(int step, Field field);
+
+    /**
+     * Determine whether the simulation should continue to run.
+     * @param field The field of the simulation.
+     * @return true if the simulation should go on.
+     */
+    boolean isViable(Field field);
+}
@@ -1,9 +1,13 @@
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import javax.swing.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.IntStream;
 
 /**
  * A graphical view of the simulation grid.
@@ -11,12 +15,23 @@ import java.util.Map;
  * representing its contents. It uses a default background color.
  * Colors for each type of species can be defined using the
  * setColor method.
+ *
+ * Drawing is kept off the simulation thread. After a step the
+ * simulation only copies what changed into a Frame, if one is free,
+ * and hands it over; a Swing timer on the event dispatch thread takes
+ * the waiting frames at most a set number of times a second and draws
+ * them. Steps taken while both frames are in use are never copied, so
+ * the simulation runs at its own speed whatever the display does.
+ * Only the cells whose occupant changed are drawn again, unless the
+ * colours or the window onto the field have changed, in which case
+ * every cell in the window is. Fields larger than the screen can be
+ * moved about and zoomed out of (see FieldView).
  * 
  * @author David J. Barnes and Michael Kölling
  * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
  * @version 21.02.2020 (2)
  */
-public class SimulatorView extends JFrame
+public class SimulatorView extends JFrame implements SimulatorObserver
 {
     // Color white used for empty locations during the day 
     private static final Color DAY_COLOR = Color.white; 
@@ -26,6 +41,12 @@ public class SimulatorView extends JFrame
 
     // Color used for objects that have no defined color.
     private static final Color UNKNOWN_COLOR = Color.magenta;
+
+    // The opacity of the species' colours in cloudy weather, out of 255.
+    private static final int CLOUDY_ALPHA = 100;
+
+    // The number of frames drawn per second unless told otherwise.
+    private static final int DEFAULT_FRAME_RATE = 60;
     
     //string text used in the GUI to describe current state of the simulation
     private final String STEP_PREFIX = "Step: ";
@@ -74,23 +95,46 @@ public class SimulatorView extends JFrame
     // Calling the simulator class
     private Simulator sim;
     
-    // A map for storing colors for participants in the simulation
-    private Map<Class, Color> colors;
+    // The color of each species in clear weather, indexed by species ordinal
+    private Color[] colors;
+
+    // The RGB every cell is drawn in for each time of day and weather
+    // (see paletteIndex): that of an empty cell, then that of each
+    // species over it, indexed by ordinal plus one. Made again whenever
+    // a colour is set, and switched once per frame.
+    private volatile int[][] palettes;
     
     // A statistics object computing and storing simulation information
     private FieldStats stats;
 
+    // The simulation's time of day and weather.
+    private Environment environment;
+
     //Calling the DayNight Class
     private DayNight dayNight;
     
     //Calling the Weather Class
     private Weather weather;
     
-    //a variable which stores the time of the day
-    private boolean isDay;
-    
-    //a variable which stores the number of steps
-    private int step;
+    // The palette of the last frame drawn.
+    private int[] palette;
+
+    // Whether every cell must be drawn in the next frame.
+    private boolean redrawAll;
+
+    // Frames the simulation can fill, and frames waiting to be drawn.
+    // There are only two frames, so neither queue ever blocks.
+    private BlockingQueue<Frame> free, ready;
+
+    // The frames taken from ready for the current drawing.
+    private Frame[] pending;
+
+    // What each cell holds as far as the display knows: the ordinal
+    // of its occupant's species plus one, or 0 if it is empty.
+    private byte[] shown;
+
+    // Draws the waiting frames on the event dispatch thread.
+    private Timer renderer;
 
     /**
      * Create a view of the given width and height.
@@ -100,13 +144,21 @@ public class SimulatorView extends JFrame
 
     public SimulatorView(int height, int width, Simulator sim)
     {
-        dayNight = new DayNight();
+        environment = sim.getField().getEnvironment();
+        dayNight = environment.getDayNight();
         disease = new Disease();
         stats = new FieldStats();
-        weather = new Weather();
-        colors = new LinkedHashMap<>();
+        weather = environment.getWeather();
+        colors = new Color[Species.count()];
+        Arrays.fill(colors, UNKNOWN_COLOR);
+        palettes = makePalettes(colors);
+        shown = new byte[height * width];
+        free = new ArrayBlockingQueue<>(2);
+        ready = new ArrayBlockingQueue<>(2);
+        pending = new Frame[2];
+        free.add(new Frame(height * width));
+        free.add(new Frame(height * width));
 
-        step = 0;
         //setting the name of the game to the top of the panel
         setTitle("INTO THE DEEP OCEAN");
         
@@ -135,18 +187,18 @@ public class SimulatorView extends JFrame
         //this button changes the current weather to cloudy.
         bCloudy = new JButton("Cloudy");
         bCloudy.addActionListener(new ActionListener() {
-                public void actionPerformed(ActionEvent e) { weather.cloudy();setCloudyWeather(); }
+                public void actionPerformed(ActionEvent e) { weather.cloudy(); }
             });
         //this button changes the current weather to clear .
         bClear = new JButton("Clear weather");
         bClear.addActionListener(new ActionListener() {
-                public void actionPerformed(ActionEvent e) { weather.clear();setNotCloudyWeather(); }
+                public void actionPerformed(ActionEvent e) { weather.clear(); }
             });    
 
         //this button changes the current weather to automatic mode .
         bWeather = new JButton("Auto Weather");
         bWeather.addActionListener(new ActionListener() {
-                public void actionPerformed(ActionEvent e) { weather.auto(); setAutoCloudyWeather();}
+                public void actionPerformed(ActionEvent e) { weather.auto(); }
             });    
         //this button impliments the disease among the animals.
         bDisease = new JButton("Disease");
@@ -228,119 +280,181 @@ public class SimulatorView extends JFrame
 
         //seting the visibility to true
         setVisible(true);
+
+        renderer = new Timer(1000 / DEFAULT_FRAME_RATE, new ActionListener() {
+                public void actionPerformed(ActionEvent e) { render(); }
+            });
+        renderer.start();
     }
 
     /**
-     * Define a color to be used for a given class of animal.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
+     * Set the most frames to draw per second.
+     * @param framesPerSecond The frame rate. Must be positive.
      */
-    public void setColor(Class animalClass, Color color)
+    public void setFrameRate(int framesPerSecond)
     {
-        colors.put(animalClass, color);
+        renderer.setDelay(Math.max(1, 1000 / framesPerSecond));
     }
 
     /**
-     * Display a short information label at the top of the window.
+     * Define a color to be used for a given species. In cloudy weather
+     * it is shown more translucent.
+     * @param species The species.
+     * @param color The color to be used for the given species.
      */
-    public void setInfoText(String text)
+    public void setColor(Species species, Color color)
     {
-        infoLabel.setText(text);
+        if(!color.equals(colors[species.ordinal()])) {
+            colors[species.ordinal()] = color;
+            palettes = makePalettes(colors);
+        }
     }
 
     /**
-     * @return The color to be used for a given class of animal.
+     * Work out the palette of every time of day and weather.
+     * @param colors The colour of each species in clear weather.
+     * @return The palettes, indexed as by paletteIndex.
      */
-    private Color getColor(Class animalClass)
+    private static int[][] makePalettes(Color[] colors)
     {
-        Color col = colors.get(animalClass);
-        if(col == null) {
-            // returns the defined unknown colour
-            return UNKNOWN_COLOR;
-        }
-        else {
-            return col;
+        int[][] palettes = new int[4][];
+        for(int night = 0; night < 2; night++) {
+            for(int cloudy = 0; cloudy < 2; cloudy++) {
+                Color background = night == 0 ? DAY_COLOR : NIGHT_COLOR;
+                int[] palette = new int[colors.length + 1];
+                palette[0] = background.getRGB() & 0xFFFFFF;
+                for(int kind = 0; kind < colors.length; kind++) {
+                    Color color = colors[kind];
+                    int alpha = cloudy == 0 ? color.getAlpha() : color.getAlpha() * CLOUDY_ALPHA / 255;
+                    palette[kind + 1] = blend(color, alpha, background);
+                }
+                palettes[paletteIndex(night == 0, cloudy == 1)] = palette;
+            }
         }
+        return palettes;
     }
 
     /**
-     * Show the current status of the field.
+     * @param isDay Whether it is day.
+     * @param isCloudy Whether it is cloudy.
+     * @return The index of the palette for that time of day and weather.
+     */
+    private static int paletteIndex(boolean isDay, boolean isCloudy)
+    {
+        return (isDay ? 0 : 2) + (isCloudy ? 1 : 0);
+    }
+
+    /**
+     * Display a short information label at the top of the window.
+     */
+    public void setInfoText(String text)
+    {
+        infoLabel.setText(text);
+    }
+
+    /**
+     * Show the current status of the field. This is called on the
+     * simulation thread: it only copies the changes into a free frame,
+     * and returns at once if there is none.
      * @param step Which iteration step it is.
      * @param field The field whose status is to be displayed.
      */
     public void showStatus(int step, Field field)
     {
-        //changes the visibility to true if its not true
-        if(!isVisible()) {
-            setVisible(true);
+        Frame frame = free.poll();
+        if(frame == null) {
+            // Both frames are still being drawn. The changes stay
+            // marked in the field and go into the next free frame.
+            return;
         }
-        
-        //returning the step variable to the DayNight Class
-        dayNight.computeStep(step);
-        
-        //returning the step variable and current time to the Weather Class
-        weather.computeStep(step, dayNight.isDay());
-        
+        frame.capture(step, field);
+        frame.isDay = environment.isDay();
+        frame.isCloudy = environment.isCloudy();
+        frame.weatherText = CURRENT_WEATHER_PREFIX + weather.showWeather() + ",  " + weather.showMode();
+        frame.timeText = CURRENT_TIME_PREFIX + dayNight.showTime() + ",  " + dayNight.showMode();
+        ready.add(frame);
+    }
+
+    /**
+     * Draw the frames waiting to be drawn, oldest first, and show the
+     * labels of the newest. This runs on the event dispatch thread.
+     */
+    private void render()
+    {
+        int count = 0;
+        Frame frame;
+        while((frame = ready.poll()) != null) {
+            if(frame.whole != null) {
+                System.arraycopy(frame.whole, 0, shown, 0, shown.length);
+                // A whole field is only sent now and then, so the room
+                // for it is not kept.
+                frame.whole = null;
+                redrawAll = true;
+            }
+            for(int i = 0; i < frame.changes; i++) {
+                shown[frame.cells[i]] = frame.kinds[i];
+            }
+            pending[count++] = frame;
+        }
+        if(count == 0) {
+            return;
+        }
+        Frame latest = pending[count - 1];
+
+        //checkes the day and weather once for the whole frame
+        //then decides which colour should the fields be
+        int[] next = palettes[paletteIndex(latest.isDay, latest.isCloudy)];
+        if(next != palette) {
+            palette = next;
+            redrawAll = true;
+        }
+        if(fieldView.preparePaint()) {
+            redrawAll = true;
+        }
+
+        if(redrawAll || !fieldView.drawsCells()) {
+            fieldView.drawAll();
+            redrawAll = false;
+        }
+        else {
+            for(int f = 0; f < count; f++) {
+                for(int i = 0; i < pending[f].changes; i++) {
+                    fieldView.drawCell(pending[f].cells[i]);
+                }
+            }
+        }
+
         //displays the current step on the top left corner of the frame 
-        stepLabel.setText(STEP_PREFIX + step);
+        stepLabel.setText(STEP_PREFIX + latest.step);
         
         //display the current weather and current weather mode in the top center of the frame
-        weatherLoc.setText(CURRENT_WEATHER_PREFIX + weather.showWeather() + ",  " + weather.showMode());
+        weatherLoc.setText(latest.weatherText);
         
         //display the current time of the day and the current time mode in the top right corner of the frame 
-        time.setText(CURRENT_TIME_PREFIX + dayNight.showTime() + ",  " + dayNight.showMode());
-        
-        
-        stats.reset();
-
-        
-        //checkes the day and weather at the same time
-        //then decides which colour should the fields be
-        
-        fieldView.preparePaint();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
-                }
-                //if its day and the weather is cloudy:
-                else if(dayNight.isDay() && weather.isCloudy()){
-                    //seting the colour to day
-                    fieldView.drawMark(col, row, DAY_COLOR);
-                    //seting the colour of the cells to cloudy weather
-                    setCloudyWeather();
+        time.setText(latest.timeText);
 
-                }
-                //if its day and the weather is not cloudy
-                else if(dayNight.isDay() && !weather.isCloudy()){
-                    //seting the colour to day
-                    fieldView.drawMark(col, row, DAY_COLOR);
-                    //seting the colour of the cells to not cloudy weather
-                    setNotCloudyWeather();
-                }
-                //if its night and the weather is cloudy
-                else if(!dayNight.isDay() && weather.isCloudy()){
-                    //seting the colour to night
-                    fieldView.drawMark(col, row, NIGHT_COLOR);
-                    //seting the coulour of the cells to cloudy weather
-                    setCloudyWeather();
+        population.setText(POPULATION_PREFIX + latest.populationDetails());
+        fieldView.repaint();
 
-                }
-                //if its night and the weather is not cloudy
-                else if(!dayNight.isDay() && !weather.isCloudy()){
-                    //seting the colour to night
-                    fieldView.drawMark(col, row, NIGHT_COLOR);
-                    //seting the colour of the cells to not cloudy weather
-                    setNotCloudyWeather();
-                }
-            }
+        for(int f = 0; f < count; f++) {
+            free.add(pending[f]);
+            pending[f] = null;
         }
-        stats.countFinished();
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
-        fieldView.repaint();
+    }
+
+    /**
+     * Work out the colour a translucent colour shows over a background.
+     * @param color The colour in front.
+     * @param alpha The opacity to show it with, out of 255.
+     * @param background The opaque colour behind it.
+     * @return The resulting colour as an RGB int.
+     */
+    private static int blend(Color color, int alpha, Color background)
+    {
+        int red = (color.getRed() * alpha + background.getRed() * (255 - alpha)) / 255;
+        int green = (color.getGreen() * alpha + background.getGreen() * (255 - alpha)) / 255;
+        int blue = (color.getBlue() * alpha + background.getBlue() * (255 - alpha)) / 255;
+        return (red << 16) | (green << 8) | blue;
     }
 
     /**
@@ -353,22 +467,170 @@ public class SimulatorView extends JFrame
     }
 
     /**
-     * Provide a graphical view of a rectangular field. This is 
+     * What the simulation hands to the display after a step: the cells
+     * that changed since the previous frame and the labels to show.
+     * After the field has been cleared or restored it holds every cell
+     * instead, one byte each, rather than a list of them all.
+     * A frame belongs to the simulation thread while it is being
+     * filled and to the event dispatch thread while it is drawn.
+     */
+    private static class Frame
+    {
+        // The step the frame shows.
+        int step;
+        // The room for changes a frame starts with. It grows as needed,
+        // and shrinks again once a frame uses less than a quarter of it,
+        // so that the frames of a large field with few changes stay small.
+        static final int INITIAL_CHANGES = 1 << 16;
+
+        // The number of cells in the field.
+        final int size;
+        // What every cell holds, if the whole field has changed, or null.
+        byte[] whole;
+
+        // The cells that changed, and what each now holds: the ordinal
+        // of its occupant's species plus one, or 0 if it is empty.
+        int[] cells;
+        byte[] kinds;
+        int changes;
+        // The number of each species, indexed by ordinal.
+        final int[] counts;
+        // The time of day and the weather.
+        boolean isDay, isCloudy;
+        String weatherText, timeText;
+
+        /**
+         * Create a frame for a field with the given number of cells.
+         */
+        Frame(int size)
+        {
+            this.size = size;
+            cells = new int[Math.min(size, INITIAL_CHANGES)];
+            kinds = new byte[cells.length];
+            counts = new int[Species.count()];
+        }
+
+        /**
+         * Copy the cells that changed since the last capture, and the
+         * population, from the field.
+         * @param step The step the field is at.
+         * @param field The field.
+         */
+        void capture(int step, Field field)
+        {
+            this.step = step;
+            EntityStore entities = field.getEntities();
+            changes = 0;
+            if(field.isAllDirty()) {
+                whole = new byte[size];
+                for(int cell = 0; cell < size; cell++) {
+                    whole[cell] = kindAt(field, entities, cell);
+                }
+            }
+            else {
+                for(int cell = field.nextDirtyCell(0); cell >= 0; cell = field.nextDirtyCell(cell + 1)) {
+                    if(changes == cells.length) {
+                        cells = Arrays.copyOf(cells, changes * 2);
+                        kinds = Arrays.copyOf(kinds, changes * 2);
+                    }
+                    cells[changes] = cell;
+                    kinds[changes] = kindAt(field, entities, cell);
+                    changes++;
+                }
+            }
+            if(cells.length > INITIAL_CHANGES && changes < cells.length / 4) {
+                cells = Arrays.copyOf(cells, Math.max(INITIAL_CHANGES, changes * 2));
+                kinds = Arrays.copyOf(kinds, cells.length);
+            }
+            field.clearDirty();
+            for(int kind = 0; kind < counts.length; kind++) {
+                counts[kind] = entities.count(Species.fromOrdinal(kind));
+            }
+        }
+
+        /**
+         * @param field The field.
+         * @param entities The field's entity store.
+         * @param cell A cell of the field.
+         * @return What the cell holds: the ordinal of its occupant's
+         *         species plus one, or 0 if it is empty.
+         */
+        private static byte kindAt(Field field, EntityStore entities, int cell)
+        {
+            int id = field.getIdAt(cell);
+            return (byte) (id == EntityStore.NONE ? 0 : entities.getSpecies(id).ordinal() + 1);
+        }
+
+        /**
+         * @return A string describing the population.
+         */
+        String populationDetails()
+        {
+            StringBuilder buffer = new StringBuilder();
+            for(int kind = 0; kind < counts.length; kind++) {
+                buffer.append(Species.fromOrdinal(kind).getName());
+                buffer.append(": ");
+                buffer.append(counts[kind]);
+                buffer.append(' ');
+            }
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Provide a graphical view of a rectangular field. This is
      * a nested class (a class defined inside a class) which
      * defines a custom component for the user interface. This
      * component displays the field.
-     * This is rather advanced GUI stuff - you can ignore this 
+     * This is rather advanced GUI stuff - you can ignore this
      * for your project if you like.
+     *
+     * The view shows a window onto the field, which can be moved by
+     * dragging it and zoomed with the mouse wheel; a double click fits
+     * the whole field in again. Only the cells in the window are drawn.
+     * Zoomed in, every cell is a square of pixels. Zoomed out, every
+     * pixel covers a square of cells and shows the species most of
+     * them hold, fading into the background as fewer of them are
+     * occupied; the pixels are worked out in bands of rows in parallel.
      */
     private class FieldView extends JPanel
     {
         private final int GRID_VIEW_SCALING_FACTOR = 6;
 
+        // The largest the view asks to be, in pixels.
+        private final int MAX_VIEW_WIDTH = 1200;
+        private final int MAX_VIEW_HEIGHT = 800;
+
+        // The scales the view can be zoomed to, from far out to close
+        // in: negative for cells per pixel, positive for pixels per cell.
+        private final int[] SCALES = { -64, -32, -16, -8, -4, -2, 1, 2, 3, 4, 6, 8, 12, 16, 24, 32 };
+
+        // Cells this many pixels wide or more are drawn with a gap.
+        private final int GAP_SCALE = 3;
+
+        // The colour of the area outside the field.
+        private final int OUTSIDE_RGB = 0x808080;
+
+        // The rows of pixels in each band worked out in parallel.
+        private final int BAND_HEIGHT = 16;
+
         private int gridWidth, gridHeight;
-        private int xScale, yScale;
         Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        // The image the window is drawn into, and its pixels, one int
+        // per pixel, row after row.
+        private BufferedImage fieldImage;
+        private int[] pixels;
+        private int imageWidth, imageHeight;
+
+        // The scale, as an index into SCALES.
+        private int scale;
+        // The cell at the top left corner of the window, in cells.
+        private double originX, originY;
+        // Whether the whole field is fitted into the window whenever
+        // its size changes, until the user zooms or drags.
+        private boolean fitted;
+        // Where the mouse was when last dragged.
+        private Point dragFrom;
 
         /**
          * Create a new FieldView component.
@@ -378,6 +640,27 @@ public class SimulatorView extends JFrame
             gridHeight = height;
             gridWidth = width;
             size = new Dimension(0, 0);
+            fitted = true;
+
+            MouseAdapter mouse = new MouseAdapter() {
+                    public void mousePressed(MouseEvent e) { dragFrom = e.getPoint(); }
+
+                    public void mouseDragged(MouseEvent e) { drag(e.getPoint()); }
+
+                    public void mouseWheelMoved(MouseWheelEvent e) { zoom(-e.getWheelRotation(), e.getPoint()); }
+
+                    public void mouseClicked(MouseEvent e)
+                    {
+                        if(e.getClickCount() == 2) {
+                            fitted = true;
+                            fit();
+                            refresh();
+                        }
+                    }
+                };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
         }
 
         /**
@@ -385,39 +668,240 @@ public class SimulatorView extends JFrame
          */
         public Dimension getPreferredSize()
         {
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
-                gridHeight * GRID_VIEW_SCALING_FACTOR);
+            return new Dimension(Math.min(gridWidth * GRID_VIEW_SCALING_FACTOR, MAX_VIEW_WIDTH),
+                                 Math.min(gridHeight * GRID_VIEW_SCALING_FACTOR, MAX_VIEW_HEIGHT));
         }
 
         /**
          * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
+         * may be resized, make the image again if it has been.
+         * @return true if a new image was made, which is still blank.
+         */
+        public boolean preparePaint()
+        {
+            if(fieldImage != null && size.equals(getSize())) {
+                return false;
+            }
+            size = getSize();
+            imageWidth = Math.max(size.width, 1);
+            imageHeight = Math.max(size.height, 1);
+            fieldImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) fieldImage.getRaster().getDataBuffer()).getData();
+            if(fitted) {
+                fit();
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the view is zoomed in far enough for every
+         *         cell to be drawn on its own, so that a change to one
+         *         cell can be drawn by drawCell.
+         */
+        public boolean drawsCells()
+        {
+            return SCALES[scale] > 0;
+        }
+
+        /**
+         * Draw the whole window.
          */
-        public void preparePaint()
+        public void drawAll()
         {
-            if(! size.equals(getSize())) {  // if the size has changed...
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
+            if(SCALES[scale] > 0) {
+                Arrays.fill(pixels, OUTSIDE_RGB);
+                int cellSize = SCALES[scale];
+                int firstCol = Math.max(0, (int) Math.floor(originX));
+                int firstRow = Math.max(0, (int) Math.floor(originY));
+                int lastCol = Math.min(gridWidth - 1, (int) (originX + (double) imageWidth / cellSize));
+                int lastRow = Math.min(gridHeight - 1, (int) (originY + (double) imageHeight / cellSize));
+                for(int row = firstRow; row <= lastRow; row++) {
+                    for(int col = firstCol; col <= lastCol; col++) {
+                        drawCell(row * gridWidth + col);
+                    }
                 }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
+            }
+            else {
+                int bands = (imageHeight + BAND_HEIGHT - 1) / BAND_HEIGHT;
+                IntStream.range(0, bands).parallel().forEach(this::drawBand);
+            }
+        }
+
+        /**
+         * Draw one cell of the field in the colour of its occupant, or
+         * of an empty cell if there is none, if it is in the window.
+         * The view must be zoomed in (see drawsCells).
+         * @param cell The cell to draw.
+         */
+        public void drawCell(int cell)
+        {
+            int cellSize = SCALES[scale];
+            int x = (int) Math.floor((cell % gridWidth - originX) * cellSize);
+            int y = (int) Math.floor((cell / gridWidth - originY) * cellSize);
+            int mark = cellSize >= GAP_SCALE ? cellSize - 1 : cellSize;
+            int left = Math.max(x, 0);
+            int right = Math.min(x + mark, imageWidth);
+            int top = Math.max(y, 0);
+            int bottom = Math.min(y + mark, imageHeight);
+            if(left >= right) {
+                return;
+            }
+            int rgb = palette[shown[cell]];
+            for(int line = top; line < bottom; line++) {
+                Arrays.fill(pixels, line * imageWidth + left, line * imageWidth + right, rgb);
+            }
+        }
+
+        /**
+         * Work out the pixels of a band of rows of the window when it is
+         * zoomed out: each shows the species most of its cells hold,
+         * blended with the empty colour by how many of them are
+         * occupied.
+         * @param band The band, counting from the top.
+         */
+        private void drawBand(int band)
+        {
+            int cellsPerPixel = -SCALES[scale];
+            int firstCol = (int) Math.floor(originX);
+            int firstRow = (int) Math.floor(originY);
+            int[] counts = new int[Species.count() + 1];
+            int[] colours = palette;
+            int end = Math.min((band + 1) * BAND_HEIGHT, imageHeight);
+            for(int y = band * BAND_HEIGHT; y < end; y++) {
+                int top = Math.max(firstRow + y * cellsPerPixel, 0);
+                int bottom = Math.min(firstRow + (y + 1) * cellsPerPixel, gridHeight);
+                for(int x = 0; x < imageWidth; x++) {
+                    int left = Math.max(firstCol + x * cellsPerPixel, 0);
+                    int right = Math.min(firstCol + (x + 1) * cellsPerPixel, gridWidth);
+                    if(top >= bottom || left >= right) {
+                        pixels[y * imageWidth + x] = OUTSIDE_RGB;
+                        continue;
+                    }
+                    Arrays.fill(counts, 0);
+                    for(int row = top; row < bottom; row++) {
+                        int from = row * gridWidth;
+                        for(int cell = from + left; cell < from + right; cell++) {
+                            counts[shown[cell]]++;
+                        }
+                    }
+                    int area = (bottom - top) * (right - left);
+                    int dominant = 0;
+                    for(int kind = 1; kind < counts.length; kind++) {
+                        if(counts[kind] > counts[dominant] || dominant == 0 && counts[kind] > 0) {
+                            dominant = kind;
+                        }
+                    }
+                    pixels[y * imageWidth + x] = dominant == 0 ? colours[0]
+                        : mix(colours[dominant], colours[0], (area - counts[0]) * 255 / area);
                 }
             }
         }
 
         /**
-         * Paint on grid location on this field in a given color.
+         * Mix two RGB colours.
+         * @param front The first colour.
+         * @param back The second colour.
+         * @param weight How much of the first colour to take, out of 255.
+         * @return The mixed colour.
+         */
+        private int mix(int front, int back, int weight)
+        {
+            int red = (((front >> 16) & 0xFF) * weight + ((back >> 16) & 0xFF) * (255 - weight)) / 255;
+            int green = (((front >> 8) & 0xFF) * weight + ((back >> 8) & 0xFF) * (255 - weight)) / 255;
+            int blue = ((front & 0xFF) * weight + (back & 0xFF) * (255 - weight)) / 255;
+            return (red << 16) | (green << 8) | blue;
+        }
+
+        /**
+         * Zoom to the largest scale at which the whole field fits into
+         * the window, and centre it.
+         */
+        private void fit()
+        {
+            scale = 0;
+            while(scale + 1 < SCALES.length && fits(SCALES[scale + 1])) {
+                scale++;
+            }
+            originX = (gridWidth - imageWidth * cellsPerPixel()) / 2;
+            originY = (gridHeight - imageHeight * cellsPerPixel()) / 2;
+        }
+
+        /**
+         * @param scale A scale from SCALES.
+         * @return true if the whole field fits into the window at it.
+         */
+        private boolean fits(int scale)
+        {
+            if(scale > 0) {
+                return gridWidth * scale <= imageWidth && gridHeight * scale <= imageHeight;
+            }
+            return (gridWidth + -scale - 1) / -scale <= imageWidth
+                   && (gridHeight + -scale - 1) / -scale <= imageHeight;
+        }
+
+        /**
+         * @return The width of a pixel in cells at the current scale.
          */
-        public void drawMark(int x, int y, Color color)
+        private double cellsPerPixel()
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            int current = SCALES[scale];
+            return current > 0 ? 1.0 / current : -current;
+        }
+
+        /**
+         * Zoom in or out by some steps of scale, keeping the cell under
+         * the mouse where it is.
+         * @param steps The steps to zoom in by; negative to zoom out.
+         * @param at Where the mouse is.
+         */
+        private void zoom(int steps, Point at)
+        {
+            int next = Math.max(0, Math.min(SCALES.length - 1, scale + steps));
+            if(next == scale) {
+                return;
+            }
+            double cellX = originX + at.x * cellsPerPixel();
+            double cellY = originY + at.y * cellsPerPixel();
+            scale = next;
+            originX = cellX - at.x * cellsPerPixel();
+            originY = cellY - at.y * cellsPerPixel();
+            fitted = false;
+            refresh();
+        }
+
+        /**
+         * Move the window with the mouse.
+         * @param to Where the mouse has been dragged to.
+         */
+        private void drag(Point to)
+        {
+            if(dragFrom == null) {
+                return;
+            }
+            originX -= (to.x - dragFrom.x) * cellsPerPixel();
+            originY -= (to.y - dragFrom.y) * cellsPerPixel();
+            dragFrom = to;
+            fitted = false;
+            refresh();
+        }
+
+        /**
+         * Draw the window again after it has been moved or zoomed,
+         * keeping at least part of the field in it.
+         */
+        private void refresh()
+        {
+            if(fieldImage == null) {
+                return;
+            }
+            double width = imageWidth * cellsPerPixel();
+            double height = imageHeight * cellsPerPixel();
+            originX = Math.max(-width / 2, Math.min(gridWidth - width / 2, originX));
+            originY = Math.max(-height / 2, Math.min(gridHeight - height / 2, originY));
+            if(palette != null) {
+                drawAll();
+            }
+            repaint();
         }
 
         /**
@@ -426,15 +910,9 @@ public class SimulatorView extends JFrame
          */
         public void paintComponent(Graphics g)
         {
+            super.paintComponent(g);
             if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
-                }
-                else {
-                    // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
-                }
+                g.drawImage(fieldImage, 0, 0, null);
             }
         }
     }
@@ -457,55 +935,4 @@ public class SimulatorView extends JFrame
         System.out.println(" ║\t Seaweed is Green                                        ║");
         System.out.println(" ╚═════════════════════════════════════════════════════╝");
     }
-
-    /**
-     * this method sets the colour of the cells to the cloudy colour
-     * by decreasing its opacity
-     */
-    private void setCloudyWeather()
-    {
-        
-        setColor(Fish.class, new Color(255,165,0,100)); //set the colour of fish to orange
-        setColor(Shark.class, new Color(0,0,255,100));  //set the colour of shark to blue
-        setColor(Shrimp.class, new Color(255,0,0,100));  //set the colour of shrimp to red
-        setColor(Whale.class, new Color(255,192,203,100)); //set the colour of whale to pink
-        setColor(Plankton.class, new Color(255,255,0,100)); //set the colour of plankton to yellow
-        setColor(SeaWeed.class, new Color(0,255,0,100)); //set the colour of seaweed to green
-    }
-    
-     /**
-     * this method sets the colour of the cells to the not cloudy colour
-     * by increasing its opacity
-     */
-    private void setNotCloudyWeather()
-    {
-        setColor(Fish.class, new Color(255,165,0,255)); //set the colour of fish to orange
-        setColor(Shark.class, new Color(0,0,255,255));  //set the colour of shark to blue
-        setColor(Shrimp.class, new Color(255,0,0,255));  //set the colour of shrimp to red
-        setColor(Whale.class, new Color(255,192,203,255)); //set the colour of whale to pink
-        setColor(Plankton.class, new Color(255,255,0,255)); //set the colour of plankton to yellow
-        setColor(SeaWeed.class, new Color(0,255,0,255)); //set the colour of seaweed to green
-    }
-
-    /**
-     * this method sets the colour of the cells to cloudy/not cloudy colour
-     * by checking the weather condition 
-     */
-    private void setAutoCloudyWeather()
-    {
-        //if the weather is cloudy         
-        if (weather.isCloudy())
-        {
-            //seting the coulour of the cells to cloudy weather
-            setCloudyWeather();         
-        }
-        
-        //if the weather is not cloudy   
-        if (!weather.isCloudy())
-        {
-            //seting the coulour of the cells to not cloudy weather
-            setNotCloudyWeather();
-        }
-    }
-
 }
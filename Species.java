@@ -0,0 +1,126 @@
+
+/**
+ * The kinds of animal and plant that live in the simulation.
+ * A species' ordinal is used to index per-species tables, such as
+ * the species column of an EntityStore.
+ *
+ * Each species knows how to make its animals or plants, both new ones
+ * for a field being populated and those recreated from the state an
+ * entity store holds, so the simulator needs no branch per species.
+ * Adding a species takes its class, a constant here and its lines in
+ * SpeciesRules.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public enum Species
+{
+    SHARK("Shark", Shark::new, Shark::new),
+    FISH("Fish", Fish::new, Fish::new),
+    PLANKTON("Plankton", Plankton::new, Plankton::new),
+    WHALE("Whale", Whale::new, Whale::new),
+    SHRIMP("Shrimp", Shrimp::new, Shrimp::new),
+    SEAWEED("SeaWeed", SeaWeed::new, SeaWeed::new);
+
+    // All species, indexed by ordinal. values() copies its array on
+    // every call, so lookups by ordinal go through this one.
+    private static final Species[] BY_ORDINAL = values();
+
+    // The name shown for the species.
+    private final String name;
+
+    // Make a new animal or plant of the species, and recreate one from
+    // an entity store.
+    private final Founder founder;
+    private final Restorer restorer;
+
+    /**
+     * Create a species with the given display name.
+     * @param name The name shown for the species.
+     * @param founder Makes a new animal or plant of the species.
+     * @param restorer Recreates an animal or plant of the species.
+     */
+    private Species(String name, Founder founder, Restorer restorer)
+    {
+        this.name = name;
+        this.founder = founder;
+        this.restorer = restorer;
+    }
+
+    /**
+     * @return The name shown for the species.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Make a new animal or plant of the species in a field.
+     * @param randomAge If true, it is given a random age.
+     * @param field The field.
+     * @param location Where in the field it is placed.
+     * @return The animal or plant.
+     */
+    public Object create(boolean randomAge, Field field, Location location)
+    {
+        return founder.create(randomAge, field, location);
+    }
+
+    /**
+     * Recreate the animal or plant of the species whose state is in
+     * the field's entity store under the given id.
+     * @param field The field.
+     * @param id The entity's id.
+     * @return The animal or plant.
+     */
+    public Object recreate(Field field, int id)
+    {
+        return restorer.recreate(field, id);
+    }
+
+    /**
+     * @return The bit that stands for the species in a set of species
+     *         held in an int, such as Field.adjacentMask takes.
+     */
+    public int bit()
+    {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Return the species with the given ordinal.
+     * @param ordinal The ordinal of the species.
+     * @return The species.
+     */
+    public static Species fromOrdinal(int ordinal)
+    {
+        return BY_ORDINAL[ordinal];
+    }
+
+    /**
+     * @return The number of species.
+     */
+    public static int count()
+    {
+        return BY_ORDINAL.length;
+    }
+
+    /**
+     * Makes a new animal or plant of a species, as its constructor
+     * taking a location does.
+     */
+    private interface Founder
+    {
+        Object create(boolean randomAge, Field field, Location location);
+    }
+
+    /**
+     * Recreates an animal or plant of a species from an entity store,
+     * as its constructor taking an id does.
+     */
+    private interface Restorer
+    {
+        Object recreate(Field field, int id);
+    }
+}
@@ -0,0 +1,372 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * The rules the species live by: how common they are in a new field,
+ * when they can breed, how old they can get, how likely they are to
+ * breed and how many young they have, and who eats whom for how much
+ * food. The rules are read from text and kept in tables indexed by
+ * species ordinal, so an animal looks up its diet and the value of
+ * its prey instead of testing types.
+ *
+ * The text has one rule per line; blank lines and lines starting
+ * with # are ignored. Species are named as by Species.getName().
+ *
+ *     start Shark 0.02
+ *         When a field is populated, a cell not yet given to a species
+ *         listed before sharks gets a shark with a probability of 0.02.
+ *     life Shark 15 120 0.15 3
+ *         A shark can breed from age 15, lives to 120, breeds with a
+ *         probability of 0.15 when it can, and has up to 3 young.
+ *     eats Shark Shrimp 5
+ *         A shark eats shrimp, and a shrimp is worth 5 food to it.
+ *         A value of 0 takes shrimp off the shark's diet.
+ *
+ * A file given to load only needs the rules that differ from the
+ * default ones; the others are kept.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class SpeciesRules
+{
+    // The rules used unless others are loaded.
+    private static final String DEFAULT_RULES =
+        "# species  probability of being created in a cell when populating\n" +
+        "start Shark     0.02\n" +
+        "start Fish      0.10\n" +
+        "start Plankton  0.15\n" +
+        "start Whale     0.05\n" +
+        "start Shrimp    0.12\n" +
+        "start SeaWeed   0.10\n" +
+        "# species  breeding age  maximum age  breeding probability  maximum litter\n" +
+        "life Shark     15  120  0.15   3\n" +
+        "life Fish       5 1000  0.80  10\n" +
+        "life Plankton   2    8  0.47   3\n" +
+        "life Whale     10  100  0.15   3\n" +
+        "life Shrimp     5   10  0.25   3\n" +
+        "life SeaWeed    2   10  1.00   7\n" +
+        "# predator  prey  food value\n" +
+        "eats Shark    Shrimp    5\n" +
+        "eats Shark    Plankton  2\n" +
+        "eats Whale    Plankton  2\n" +
+        "eats Whale    Fish      9\n" +
+        "eats Fish     SeaWeed   2\n" +
+        "eats Plankton SeaWeed   2\n";
+
+    // The default rules, read once.
+    private static final SpeciesRules DEFAULT = parseDefault();
+
+    // The probability of each species being created in a cell when a
+    // field is populated, indexed by ordinal.
+    private final double[] creationProbability;
+
+    // The life history of each species, indexed by ordinal.
+    private final int[] breedingAge;
+    private final int[] maxAge;
+    private final double[] breedingProbability;
+    private final int[] maxLitterSize;
+
+    // The food value of each prey to each predator, at
+    // predator * Species.count() + prey. 0 if it is not eaten.
+    private final int[] foodValue;
+
+    // For each predator, its prey as a set of Species.bit().
+    private final int[] diet;
+
+    /**
+     * Create rules in which nothing breeds, eats or grows old.
+     */
+    private SpeciesRules()
+    {
+        int kinds = Species.count();
+        creationProbability = new double[kinds];
+        breedingAge = new int[kinds];
+        maxAge = new int[kinds];
+        breedingProbability = new double[kinds];
+        maxLitterSize = new int[kinds];
+        foodValue = new int[kinds * kinds];
+        diet = new int[kinds];
+    }
+
+    /**
+     * Create a copy of other rules.
+     * @param other The rules to copy.
+     */
+    private SpeciesRules(SpeciesRules other)
+    {
+        creationProbability = other.creationProbability.clone();
+        breedingAge = other.breedingAge.clone();
+        maxAge = other.maxAge.clone();
+        breedingProbability = other.breedingProbability.clone();
+        maxLitterSize = other.maxLitterSize.clone();
+        foodValue = other.foodValue.clone();
+        diet = other.diet.clone();
+    }
+
+    /**
+     * @return The rules the simulation uses unless it is given others.
+     */
+    public static SpeciesRules getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Read rules from a file, starting from the default rules.
+     * @param fileName The file to read.
+     * @return The rules.
+     * @throws IOException If the file cannot be read or holds a line
+     *                     that is not a rule.
+     */
+    public static SpeciesRules load(String fileName) throws IOException
+    {
+        try(BufferedReader in = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            return DEFAULT.with(in, fileName);
+        }
+    }
+
+    /**
+     * Read rules from text, starting from the default rules.
+     * @param text The rules, in the format load reads.
+     * @return The rules.
+     * @throws IllegalArgumentException If the text holds a line that
+     *                                  is not a rule.
+     */
+    public static SpeciesRules parse(String text)
+    {
+        try {
+            return DEFAULT.with(new BufferedReader(new StringReader(text)), "rules");
+        }
+        catch(IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param kind A species.
+     * @return The probability that a cell gets an animal or plant of
+     *         the species when a field is populated, if no species
+     *         before it has taken the cell.
+     */
+    public double getCreationProbability(Species kind)
+    {
+        return creationProbability[kind.ordinal()];
+    }
+
+    /**
+     * @param kind A species.
+     * @return The age from which the species can breed.
+     */
+    public int getBreedingAge(Species kind)
+    {
+        return breedingAge[kind.ordinal()];
+    }
+
+    /**
+     * @param kind A species.
+     * @return The age to which the species can live.
+     */
+    public int getMaxAge(Species kind)
+    {
+        return maxAge[kind.ordinal()];
+    }
+
+    /**
+     * @param kind A species.
+     * @return The likelihood of the species breeding when it can.
+     */
+    public double getBreedingProbability(Species kind)
+    {
+        return breedingProbability[kind.ordinal()];
+    }
+
+    /**
+     * @param kind A species.
+     * @return The most young the species has at once.
+     */
+    public int getMaxLitterSize(Species kind)
+    {
+        return maxLitterSize[kind.ordinal()];
+    }
+
+    /**
+     * @param predator A species.
+     * @return What the species eats, as a set of Species.bit(), such
+     *         as Field.adjacentMask takes.
+     */
+    public int getDiet(Species predator)
+    {
+        return diet[predator.ordinal()];
+    }
+
+    /**
+     * @param predator The species that eats.
+     * @param prey The species eaten.
+     * @return The food one prey is worth to the predator, or 0 if the
+     *         predator does not eat it.
+     */
+    public int getFoodValue(Species predator, Species prey)
+    {
+        return foodValue[predator.ordinal() * Species.count() + prey.ordinal()];
+    }
+
+    /**
+     * @return The number of bytes writeTo writes.
+     */
+    public int checkpointSize()
+    {
+        int kinds = Species.count();
+        return 4 + kinds * (8 + 4 + 4 + 8 + 4) + kinds * kinds * 4;
+    }
+
+    /**
+     * Write the rules to a buffer.
+     * @param out The buffer to write to.
+     */
+    public void writeTo(ByteBuffer out)
+    {
+        int kinds = Species.count();
+        out.putInt(kinds);
+        for(int kind = 0; kind < kinds; kind++) {
+            out.putDouble(creationProbability[kind]);
+            out.putInt(breedingAge[kind]);
+            out.putInt(maxAge[kind]);
+            out.putDouble(breedingProbability[kind]);
+            out.putInt(maxLitterSize[kind]);
+        }
+        for(int value : foodValue) {
+            out.putInt(value);
+        }
+    }
+
+    /**
+     * Read rules that writeTo wrote.
+     * @param in The buffer to read from.
+     * @return The rules.
+     */
+    public static SpeciesRules readFrom(ByteBuffer in)
+    {
+        int kinds = in.getInt();
+        if(kinds != Species.count()) {
+            throw new IllegalStateException("Rules for " + kinds + " species, but there are "
+                                            + Species.count());
+        }
+        SpeciesRules rules = new SpeciesRules();
+        for(int kind = 0; kind < kinds; kind++) {
+            rules.creationProbability[kind] = in.getDouble();
+            rules.breedingAge[kind] = in.getInt();
+            rules.maxAge[kind] = in.getInt();
+            rules.breedingProbability[kind] = in.getDouble();
+            rules.maxLitterSize[kind] = in.getInt();
+        }
+        for(int i = 0; i < rules.foodValue.length; i++) {
+            rules.foodValue[i] = in.getInt();
+        }
+        rules.compileDiets();
+        return rules;
+    }
+
+    /**
+     * Read the default rules.
+     * @return The default rules.
+     */
+    private static SpeciesRules parseDefault()
+    {
+        try {
+            return new SpeciesRules().with(new BufferedReader(new StringReader(DEFAULT_RULES)), "defaults");
+        }
+        catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return a copy of these rules with the rules read from the
+     * given text applied on top.
+     * @param in The text to read.
+     * @param source The name of the text, for error messages.
+     * @return The new rules.
+     * @throws IOException If the text cannot be read or holds a line
+     *                     that is not a rule.
+     */
+    private SpeciesRules with(BufferedReader in, String source) throws IOException
+    {
+        SpeciesRules rules = new SpeciesRules(this);
+        String line;
+        int lineNumber = 0;
+        while((line = in.readLine()) != null) {
+            lineNumber++;
+            String[] words = line.trim().split("\\s+");
+            if(words[0].isEmpty() || words[0].startsWith("#")) {
+                continue;
+            }
+            try {
+                if(words[0].equals("start") && words.length == 3) {
+                    int kind = speciesNamed(words[1]).ordinal();
+                    rules.creationProbability[kind] = Double.parseDouble(words[2]);
+                }
+                else if(words[0].equals("life") && words.length == 6) {
+                    int kind = speciesNamed(words[1]).ordinal();
+                    rules.breedingAge[kind] = Integer.parseInt(words[2]);
+                    rules.maxAge[kind] = Integer.parseInt(words[3]);
+                    rules.breedingProbability[kind] = Double.parseDouble(words[4]);
+                    rules.maxLitterSize[kind] = Integer.parseInt(words[5]);
+                }
+                else if(words[0].equals("eats") && words.length == 4) {
+                    Species predator = speciesNamed(words[1]);
+                    Species prey = speciesNamed(words[2]);
+                    rules.foodValue[predator.ordinal() * Species.count() + prey.ordinal()] =
+                        Integer.parseInt(words[3]);
+                }
+                else {
+                    throw new IllegalArgumentException("not a rule");
+                }
+            }
+            catch(IllegalArgumentException e) {
+                throw new IOException(source + ", line " + lineNumber + ": " + e.getMessage()
+                                      + ": " + line.trim());
+            }
+        }
+        rules.compileDiets();
+        return rules;
+    }
+
+    /**
+     * Work out the diet of every species from the food values.
+     */
+    private void compileDiets()
+    {
+        int kinds = Species.count();
+        Arrays.fill(diet, 0);
+        for(int predator = 0; predator < kinds; predator++) {
+            for(int prey = 0; prey < kinds; prey++) {
+                if(foodValue[predator * kinds + prey] > 0) {
+                    diet[predator] |= Species.fromOrdinal(prey).bit();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name The name of a species, in any case.
+     * @return The species.
+     * @throws IllegalArgumentException If there is no such species.
+     */
+    private static Species speciesNamed(String name)
+    {
+        for(int kind = 0; kind < Species.count(); kind++) {
+            Species species = Species.fromOrdinal(kind);
+            if(species.getName().equalsIgnoreCase(name)) {
+                return species;
+            }
+        }
+        throw new IllegalArgumentException("unknown species " + name);
+    }
+}
@@ -0,0 +1,66 @@
+import java.io.PrintStream;
+
+/**
+ * An observer that counts the population and prints it every so
+ * many steps, without any display. Like the graphical view it stops
+ * the simulation once fewer than two species are left.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class StatsObserver implements SimulatorObserver
+{
+    // The statistics of the field.
+    private FieldStats stats;
+
+    // Where the population is printed.
+    private PrintStream out;
+
+    // The population is printed every this many steps.
+    private int interval;
+
+    /**
+     * Create an observer that prints the population to the given
+     * stream.
+     * @param out Where the population is printed.
+     * @param interval Print every this many steps; 0 never to print.
+     */
+    public StatsObserver(PrintStream out, int interval)
+    {
+        stats = new FieldStats();
+        this.out = out;
+        this.interval = interval;
+    }
+
+    /**
+     * Print the population if this is a step to print.
+     * @param step Which iteration step it is.
+     * @param field The field of the simulation.
+     */
+    public void showStatus(int step, Field field)
+    {
+        if(interval > 0 && step % interval == 0) {
+            out.println("Step " + step + ": " + stats.getPopulationDetails(field));
+        }
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     * @param field The field of the simulation.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable(Field field)
+    {
+        return stats.isViable(field);
+    }
+
+    /**
+     * Return a description of the population of the field.
+     * @param field The field of the simulation.
+     * @return A string describing what is in the field.
+     */
+    public String getPopulationDetails(Field field)
+    {
+        return stats.getPopulationDetails(field);
+    }
+}
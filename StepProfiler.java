@@ -0,0 +1,433 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Measure where the time and the allocations of the simulation's
+ * steps go, phase by phase: deaths by old age, the acts of the animals
+ * - split by species - and of the plants, the settling of their claims
+ * in a synchronous step, the removal of the dead, the merging of the
+ * newborns into the lists, the view (statistics or rendering) and the
+ * further observers.
+ *
+ * The simulator marks the end of every phase, and the profiler adds up
+ * the time and the bytes allocated by the stepping thread since the
+ * previous mark. It also prints the mean of every phase every so many
+ * steps, and commits a StepEvent to Java Flight Recorder after every
+ * step when a recording asks for them:
+ *     java -XX:StartFlightRecording=filename=steps.jfr Simulator
+ *
+ * A simulator without a profiler makes no measurements at all. With
+ * more than one thread the acts are measured as a whole, without the
+ * split by species, and the allocations of the stepper's threads are
+ * not counted.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class StepProfiler
+{
+    /**
+     * The phases of a step, in the order they run.
+     */
+    public enum Phase
+    {
+        AGE("age"), ANIMALS("animals"), PLANTS("plants"), RESOLVE("resolve"),
+        REMOVE("remove dead"), MERGE("merge"), VIEW("view"), OBSERVERS("observers");
+
+        // The name of the phase in the log.
+        private final String name;
+
+        /**
+         * @param name The name of the phase in the log.
+         */
+        Phase(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * @return The name of the phase in the log.
+         */
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    // The allocation counter of the JVM.
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Whether the JVM counts the bytes each thread allocates.
+    private static final boolean COUNTS_ALLOCATIONS =
+        threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+
+    // Where the log lines are printed, and every how many steps.
+    private final PrintStream out;
+    private final int interval;
+
+    // The totals since the profiler was created.
+    private final Totals total = new Totals();
+
+    // The totals since the last log line.
+    private final Totals recent = new Totals();
+
+    // The time and allocation counter at the end of the last phase,
+    // and at the end of the last act.
+    private long markNanos, markBytes;
+    private long actNanos, actBytes;
+
+    // The time and allocation counter at the start of the step.
+    private long stepNanos, stepBytes;
+
+    // The time and bytes of each phase of the current step.
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final long[] phaseBytes = new long[Phase.values().length];
+
+    // The step being measured.
+    private int step;
+
+    /**
+     * Create a profiler that prints the mean of every phase to the
+     * given stream.
+     * @param out Where the log lines are printed.
+     * @param interval Print every this many steps; 0 never to print.
+     */
+    public StepProfiler(PrintStream out, int interval)
+    {
+        this.out = out;
+        this.interval = interval;
+    }
+
+    /**
+     * Start measuring a step.
+     * @param step The step.
+     */
+    public void startStep(int step)
+    {
+        this.step = step;
+        markNanos = System.nanoTime();
+        markBytes = allocatedBytes();
+        actNanos = markNanos;
+        actBytes = markBytes;
+        stepNanos = markNanos;
+        stepBytes = markBytes;
+        // Not every phase runs in every step.
+        Arrays.fill(phaseNanos, 0);
+        Arrays.fill(phaseBytes, 0);
+    }
+
+    /**
+     * Mark the end of a phase of the step: the time and allocations
+     * since the last mark are put down to it.
+     * @param phase The phase that has ended.
+     */
+    public void endPhase(Phase phase)
+    {
+        long nanos = System.nanoTime();
+        long bytes = allocatedBytes();
+        phaseNanos[phase.ordinal()] = nanos - markNanos;
+        phaseBytes[phase.ordinal()] = bytes - markBytes;
+        markNanos = nanos;
+        markBytes = bytes;
+        actNanos = nanos;
+        actBytes = bytes;
+    }
+
+    /**
+     * Mark the end of an act within the animal or plant phase: the
+     * time and allocations since the end of the last act, or of the
+     * last phase, are put down to the actor's species. They are put
+     * down to the phase as well when it ends.
+     * @param species The species of the animal or plant that acted.
+     */
+    public void endAct(Species species)
+    {
+        long nanos = System.nanoTime();
+        long bytes = allocatedBytes();
+        int kind = species.ordinal();
+        recent.actNanos[kind] += nanos - actNanos;
+        recent.actBytes[kind] += bytes - actBytes;
+        actNanos = nanos;
+        actBytes = bytes;
+    }
+
+    /**
+     * Finish measuring the step: add it to the totals, commit its JFR
+     * event and print a log line if one is due.
+     * @param animals The number of animals after the step.
+     * @param plants The number of plants after the step.
+     */
+    public void endStep(int animals, int plants)
+    {
+        recent.steps++;
+        for(int phase = 0; phase < phaseNanos.length; phase++) {
+            recent.nanos[phase] += phaseNanos[phase];
+            recent.bytes[phase] += phaseBytes[phase];
+        }
+
+        StepEvent event = new StepEvent();
+        if(event.shouldCommit()) {
+            event.step = step;
+            event.animals = animals;
+            event.plants = plants;
+            event.age = phaseNanos[Phase.AGE.ordinal()];
+            event.animalActs = phaseNanos[Phase.ANIMALS.ordinal()];
+            event.plantActs = phaseNanos[Phase.PLANTS.ordinal()];
+            event.resolve = phaseNanos[Phase.RESOLVE.ordinal()];
+            event.removeDead = phaseNanos[Phase.REMOVE.ordinal()];
+            event.merge = phaseNanos[Phase.MERGE.ordinal()];
+            event.view = phaseNanos[Phase.VIEW.ordinal()];
+            event.observers = phaseNanos[Phase.OBSERVERS.ordinal()];
+            event.allocated = markBytes - stepBytes;
+            event.total = markNanos - stepNanos;
+            event.commit();
+        }
+
+        if(interval > 0 && step % interval == 0) {
+            out.println("Step " + step + " profile: " + recent.describe());
+        }
+        if(recent.steps >= Math.max(interval, 1)) {
+            total.add(recent);
+            recent.clear();
+        }
+    }
+
+    /**
+     * @return The totals of every step measured so far.
+     */
+    public Snapshot snapshot()
+    {
+        Totals all = new Totals();
+        all.add(total);
+        all.add(recent);
+        return new Snapshot(all);
+    }
+
+    /**
+     * @return The bytes the calling thread has allocated so far, or 0
+     *         if the JVM does not count them.
+     */
+    private static long allocatedBytes()
+    {
+        return COUNTS_ALLOCATIONS ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * The time and allocations of every phase and of the acts of every
+     * species over a number of steps.
+     */
+    private static class Totals
+    {
+        // The number of steps added up.
+        int steps;
+        // The nanoseconds and bytes of each phase.
+        final long[] nanos = new long[Phase.values().length];
+        final long[] bytes = new long[Phase.values().length];
+        // The nanoseconds and bytes of the acts of each species.
+        final long[] actNanos = new long[Species.count()];
+        final long[] actBytes = new long[Species.count()];
+
+        /**
+         * Add other totals to these.
+         * @param other The totals to add.
+         */
+        void add(Totals other)
+        {
+            steps += other.steps;
+            for(int i = 0; i < nanos.length; i++) {
+                nanos[i] += other.nanos[i];
+                bytes[i] += other.bytes[i];
+            }
+            for(int i = 0; i < actNanos.length; i++) {
+                actNanos[i] += other.actNanos[i];
+                actBytes[i] += other.actBytes[i];
+            }
+        }
+
+        /**
+         * Set the totals back to nothing.
+         */
+        void clear()
+        {
+            steps = 0;
+            Arrays.fill(nanos, 0);
+            Arrays.fill(bytes, 0);
+            Arrays.fill(actNanos, 0);
+            Arrays.fill(actBytes, 0);
+        }
+
+        /**
+         * @return The mean time and allocation of each phase per step,
+         *         then the mean time of the acts of each species.
+         */
+        String describe()
+        {
+            int perStep = Math.max(steps, 1);
+            StringBuilder line = new StringBuilder();
+            long stepNanos = 0;
+            long stepBytes = 0;
+            for(Phase phase : Phase.values()) {
+                int i = phase.ordinal();
+                stepNanos += nanos[i];
+                stepBytes += bytes[i];
+                line.append(phase.getName()).append(' ')
+                    .append(String.format("%.3f ms", nanos[i] / 1e6 / perStep));
+                if(bytes[i] >= 1024 * perStep) {
+                    line.append(' ').append(bytes[i] / perStep / 1024).append(" kB");
+                }
+                line.append(", ");
+            }
+            line.append("step ").append(String.format("%.3f ms", stepNanos / 1e6 / perStep))
+                .append(' ').append(stepBytes / perStep / 1024).append(" kB");
+            describeActs(line, perStep);
+            return line.toString();
+        }
+
+        /**
+         * Describe the mean act time of each species in milliseconds,
+         * if the acts were measured by species.
+         * @param line Receives the description.
+         * @param perStep The number of steps to divide by.
+         */
+        private void describeActs(StringBuilder line, int perStep)
+        {
+            String separator = "; acts: ";
+            for(int kind = 0; kind < actNanos.length; kind++) {
+                if(actNanos[kind] > 0) {
+                    line.append(separator).append(Species.fromOrdinal(kind).getName()).append(' ')
+                        .append(String.format("%.3f", actNanos[kind] / 1e6 / perStep));
+                    separator = ", ";
+                }
+            }
+        }
+    }
+
+    /**
+     * The time and allocations of every phase and of the acts of every
+     * species, added up over the steps measured.
+     */
+    public static class Snapshot
+    {
+        // The totals, which are not changed after the snapshot is taken.
+        private final Totals totals;
+
+        /**
+         * @param totals The totals, which no one else may change.
+         */
+        private Snapshot(Totals totals)
+        {
+            this.totals = totals;
+        }
+
+        /**
+         * @return The number of steps measured.
+         */
+        public int getSteps()
+        {
+            return totals.steps;
+        }
+
+        /**
+         * @param phase A phase of the step.
+         * @return The nanoseconds spent in the phase.
+         */
+        public long getNanos(Phase phase)
+        {
+            return totals.nanos[phase.ordinal()];
+        }
+
+        /**
+         * @param phase A phase of the step.
+         * @return The bytes allocated in the phase by the stepping thread.
+         */
+        public long getAllocatedBytes(Phase phase)
+        {
+            return totals.bytes[phase.ordinal()];
+        }
+
+        /**
+         * @param species A species.
+         * @return The nanoseconds spent in the acts of the species, or 0
+         *         if they were run on several threads.
+         */
+        public long getActNanos(Species species)
+        {
+            return totals.actNanos[species.ordinal()];
+        }
+
+        /**
+         * @param species A species.
+         * @return The bytes allocated in the acts of the species.
+         */
+        public long getActAllocatedBytes(Species species)
+        {
+            return totals.actBytes[species.ordinal()];
+        }
+
+        /**
+         * @return The mean time and allocation of each phase per step.
+         */
+        public String toString()
+        {
+            return totals.describe();
+        }
+    }
+
+    /**
+     * A step of the simulation, as recorded by Java Flight Recorder.
+     */
+    @Name("ocean.Step")
+    @Label("Simulation Step")
+    @Category("Ocean Simulation")
+    @Description("The time of each phase of a step and the bytes the stepping thread allocated")
+    static class StepEvent extends Event
+    {
+        @Label("Step")
+        int step;
+
+        @Label("Animals")
+        int animals;
+
+        @Label("Plants")
+        int plants;
+
+        @Label("Deaths by Age") @Timespan(Timespan.NANOSECONDS)
+        long age;
+
+        @Label("Animal Acts") @Timespan(Timespan.NANOSECONDS)
+        long animalActs;
+
+        @Label("Plant Acts") @Timespan(Timespan.NANOSECONDS)
+        long plantActs;
+
+        @Label("Settling Claims") @Timespan(Timespan.NANOSECONDS)
+        long resolve;
+
+        @Label("Removing the Dead") @Timespan(Timespan.NANOSECONDS)
+        long removeDead;
+
+        @Label("Merging the Newborns") @Timespan(Timespan.NANOSECONDS)
+        long merge;
+
+        @Label("View") @Timespan(Timespan.NANOSECONDS)
+        long view;
+
+        @Label("Observers") @Timespan(Timespan.NANOSECONDS)
+        long observers;
+
+        @Label("Step Total") @Timespan(Timespan.NANOSECONDS)
+        long total;
+
+        @Label("Allocated") @DataAmount
+        long allocated;
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A hashed timing wheel of entity ids keyed by the step in which
+ * something is due to happen to them, such as dying of old age.
+ *
+ * The wheel has a power-of-two number of slots and an id due in a step
+ * goes into the slot the step hashes to. Expiring a step looks only at
+ * that slot, so the work per step is proportional to the number of
+ * ids scheduled in it rather than to the number of entities. Ids due
+ * more than a turn of the wheel ahead wait in their slot until their
+ * turn comes round.
+ *
+ * Nothing is ever cancelled: an entity that dies early, or whose id is
+ * handed to another entity, stays in the wheel, and whoever expires
+ * the step must check that the id is still due.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class TimingWheel
+{
+    // The ids in each slot, and the step each is due in.
+    private int[][] ids;
+    private int[][] steps;
+    private int[] counts;
+
+    // The number of slots less one.
+    private final int mask;
+
+    /**
+     * Create an empty wheel.
+     * @param span The number of steps ahead most ids are scheduled.
+     *             The wheel gets at least this many slots.
+     */
+    public TimingWheel(int span)
+    {
+        int slots = Integer.highestOneBit(Math.max(span, 1) - 1) << 1;
+        mask = Math.max(slots, 1) - 1;
+        ids = new int[mask + 1][];
+        steps = new int[mask + 1][];
+        counts = new int[mask + 1];
+        for(int slot = 0; slot <= mask; slot++) {
+            ids[slot] = new int[8];
+            steps[slot] = new int[8];
+        }
+    }
+
+    /**
+     * Schedule an id for a step.
+     * @param id The id.
+     * @param step The step it is due in.
+     */
+    public void schedule(int id, int step)
+    {
+        int slot = step & mask;
+        int count = counts[slot];
+        if(count == ids[slot].length) {
+            ids[slot] = Arrays.copyOf(ids[slot], count * 2);
+            steps[slot] = Arrays.copyOf(steps[slot], count * 2);
+        }
+        ids[slot][count] = id;
+        steps[slot][count] = step;
+        counts[slot] = count + 1;
+    }
+
+    /**
+     * Hand every id due in a step to an action, in the order they were
+     * scheduled, and forget them. Ids due in later turns of the wheel
+     * are kept.
+     * @param step The step.
+     * @param action What to do with each id.
+     */
+    public void expire(int step, IntConsumer action)
+    {
+        int slot = step & mask;
+        int[] slotIds = ids[slot];
+        int[] slotSteps = steps[slot];
+        int count = counts[slot];
+        int kept = 0;
+        for(int i = 0; i < count; i++) {
+            if(slotSteps[i] == step) {
+                action.accept(slotIds[i]);
+            }
+            else if(slotSteps[i] > step) {
+                slotIds[kept] = slotIds[i];
+                slotSteps[kept] = slotSteps[i];
+                kept++;
+            }
+        }
+        counts[slot] = kept;
+    }
+
+    /**
+     * Forget every id.
+     */
+    public void clear()
+    {
+        Arrays.fill(counts, 0);
+    }
+}
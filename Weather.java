@@ -1,4 +1,3 @@
-import java.util.Random;
 /**
  * This class holds shared characteristics of the weather. 
  * The weather changes automatically, and can also be changed manually. 
@@ -25,14 +24,24 @@ public class Weather
     //a variable which stores the weather condition
     private boolean isCloudy;
 
-    // A shared random number generator to control breeding.
-    private static final Random rd = Randomizer.getRandom();
+    //the seed the weather changes are drawn from
+    private long seed;
 
     /**
      * crating the Weather, initialising the variables
      */
     public Weather()
     {
+        this(Randomizer.getSeed());
+    }
+
+    /**
+     * crating the Weather, drawing its changes from the given seed,
+     * so that the same seed always gives the same weather
+     */
+    public Weather(long seed)
+    {
+        this.seed = seed;
         isDay = true;
 
         isCloudy = false;
@@ -78,10 +87,9 @@ public class Weather
      */
     public void changeWeather()
     {
-        Random rd = new Random(); // creating Random object
-
-        //every 30 steps the weather randomly changes
-        isCloudy = rd.nextBoolean();
+        //every 30 steps the weather randomly changes,
+        //the same way for the same seed and step
+        isCloudy = Randomizer.mix(Randomizer.streamSeed(seed, steps, 0)) < 0;
         if (!isDay && isCloudy)
         {
             isCloudy = false;
@@ -115,6 +123,15 @@ public class Weather
         return isCloudy;
     }
 
+    /**
+     * returns true if the weather is set by hand
+     * rather than changing automatically
+     */
+    public boolean isManual()
+    {
+        return button;
+    }
+
     /**
      * this method will change the current weather to cloudy
      * and also the current mode to manual
@@ -1,6 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
 
 /**
  * A simple model of a whale.
@@ -11,46 +9,13 @@ import java.util.Random;
  */
 public class Whale extends Animal
 {
-    // Characteristics shared by all whales (class variables).
+    // Characteristics shared by all whales (class variables). Their
+    // life history and diet are in the field's SpeciesRules.
 
-    // The age at which a whale can start to breed.
-    private static final int BREEDING_AGE = 10;
-    
-    // The age to which a whale can live.
-    private static final int MAX_AGE = 100;
-    
-    // The likelihood of a whale breeding.
-    private static final double BREEDING_PROBABILITY = 0.15;
-    
-    // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 3;
-    
-    // The food value of a single fish.
+    // The food values a new whale's food level is made up from.
     private static final int FISH_FOOD_VALUE = 9;
-    
-    // The food value of a single shrimp.
-    private static final int SHRIMP_FOOD_VALUE = 5;
-    
-    // The food value of a single plankton.
     private static final int PLANKTON_FOOD_VALUE = 2;
 
-    // A shared random number generator to control breeding.
-    private static final Random rand = Randomizer.getRandom();
-
-    // Individual characteristics (instance fields).
-    
-    // The whale's age.
-    private int age;
-    
-    // The whale's food level, which is increased by eating animals.
-    private int foodLevel;
-
-    //distinguishes between male and female
-    private boolean isMale;
-
-    //calling the DayNight Class
-    private DayNight dayNight;
-
     /**
      * Create a whale. A whale can be created as a new born (age zero
      * and not hungry) or with a random age and food level.
@@ -62,18 +27,59 @@ public class Whale extends Animal
      */
     public Whale(boolean randomAge, Field field, Location location)
     {
-        super(field, location);
+        super(Species.WHALE, field, location);
+        start(randomAge);
+    }
+
+    /**
+     * Recreate a whale from a checkpoint. Its state is already in the
+     * field's entity store.
+     * 
+     * @param field The field currently occupied.
+     * @param id The whale's id in the field's entity store.
+     */
+    public Whale(Field field, int id)
+    {
+        super(field, id);
+    }
+
+    /**
+     * Return a newborn whale at the given location, bringing a dead whale
+     * from the field's pool back to life if there is one, so that no
+     * object has to be allocated.
+     * 
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     * @return The newborn whale.
+     */
+    public static Whale newborn(Field field, Location location)
+    {
+        Whale young = (Whale) field.getEntities().reuse(Species.WHALE);
+        if(young == null) {
+            return new Whale(false, field, location);
+        }
+        young.enter(Species.WHALE, location);
+        young.start(false);
+        return young;
+    }
+
+    /**
+     * Give a whale that has just come to life its age, food level and
+     * sex.
+     * 
+     * @param randomAge If true, the whale will have a random age.
+     */
+    private void start(boolean randomAge)
+    {
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
-            foodLevel = rand.nextInt(FISH_FOOD_VALUE) + rand.nextInt(PLANKTON_FOOD_VALUE);
+            setAge(nextInt(getField().getRules().getMaxAge(Species.WHALE)));
+            setFoodLevel(nextInt(FISH_FOOD_VALUE) + nextInt(PLANKTON_FOOD_VALUE));
         }
         else {
-            age = 0;
-            foodLevel = FISH_FOOD_VALUE + PLANKTON_FOOD_VALUE ;
+            setAge(0);
+            setFoodLevel(FISH_FOOD_VALUE + PLANKTON_FOOD_VALUE );
         }
-        dayNight = new DayNight();
-        Random rd = new Random(); // creating Random object
-        isMale = rd.nextBoolean(); // distingushing between male and female
+        setMale(nextBoolean()); // distingushing between male and female
     }
 
     /**
@@ -85,15 +91,16 @@ public class Whale extends Animal
      */
     public void act(List<Animal> newWhales)
     {
-        incrementAge();
-        incrementHunger();
+        if(isAlive()) {
+            incrementHunger();
+        }
         if(isAlive()) {
             giveBirth(newWhales);            
             // Move towards a source of food if found.
             Location newLocation = findFood();
             if(newLocation == null ) { 
                 // No food found - try to move to a free location.
-                newLocation = getField().freeAdjacentLocation(getLocation());
+                newLocation = getField().freeAdjacentLocation(getLocation(), nextInt(Field.MAX_ADJACENT));
             }
             // See if it was possible to move.
             if(newLocation != null) {
@@ -106,27 +113,15 @@ public class Whale extends Animal
         }
     }
 
-    /**
-     * Increase the age. This could result in the whale's death.
-     */
-    private void incrementAge()
-    {
-        age++;  //increment the age 
-        //if the current age was grater than max age 
-        if(age > MAX_AGE) {
-            setDead(); //the whale will be dead
-        }
-    }
-
     /**
      * Make this whale more hungry. This could result in the whale's death.
      */
     private void incrementHunger()
     {
-        foodLevel--;   //decreasing food level of fish by one
+        setFoodLevel(getFoodLevel() - 1);   //decreasing food level of fish by one
         //if the food level of whale is less than or equal to 0
-        if(foodLevel <= 0) {
-            setDead();
+        if(getFoodLevel() <= 0) {
+            setDead(EventRing.Type.STARVATION);
         }
     }
 
@@ -137,37 +132,13 @@ public class Whale extends Animal
      */
     private Location findFood()
     {
-        //check the animals and plants around the whale
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            //only hunts if its day.
-            if(dayNight.isDay()) 
-            {
-                //if the adjacent plankton was alive it lets the whale to eat it 
-                if(animal instanceof Plankton) {           
-                    Plankton plankton = (Plankton) animal;
-                    if(plankton.isAlive()) { 
-                        plankton.setDead();
-                        foodLevel = PLANKTON_FOOD_VALUE;
-                        return where;
-                    }
-                }
-                //if the adjacent fish was alive it lets the whale to eat it 
-                if(animal instanceof Fish) {
-                    Fish fish = (Fish) animal;
-                    if(fish.isAlive()) { 
-                        fish.setDead();
-                        foodLevel = FISH_FOOD_VALUE;
-                        return where;
-                    }
-                }
-            }
+        int start = nextInt(Field.MAX_ADJACENT);
+        //only hunts if its day.
+        if(!getField().getEnvironment().isDay()) {
+            return null;
         }
-        return null;
+        //the whale's diet is in the species rules
+        return eat(start);
     }
 
     /**
@@ -180,11 +151,12 @@ public class Whale extends Animal
         // New whales are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int[] free = cellBuffer();
+        int freeCount = field.freeAdjacentCells(getLocation(), free, nextInt(Field.MAX_ADJACENT));
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Whale young = new Whale(false, field, loc);
+        for(int b = 0; b < births && b < freeCount; b++) {
+            Location loc = field.locationOf(free[b]);
+            Whale young = newborn(field, loc);
             newWhales.add(young);
         }
     }
@@ -197,8 +169,9 @@ public class Whale extends Animal
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        SpeciesRules rules = getField().getRules();
+        if(canBreed() && nextDouble() <= rules.getBreedingProbability(Species.WHALE)) {
+            births = nextInt(rules.getMaxLitterSize(Species.WHALE)) + 1;
         }
         return births;
     }
@@ -206,41 +179,10 @@ public class Whale extends Animal
     /**
      * A whale can breed if it has reached the breeding age.
      * @return true if the whale can breed, false otherwise.
-     * a whale can only breed if it is next to its opposite gender
      */
     private boolean canBreed()
     {
-
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            for (int i =0; i>= field.adjacentLocations(getLocation()).size(); i++)
-            {
-                //if the adjacent animal is a male shark and the food level is greater than 3
-                if(animal instanceof Whale && isMale && foodLevel>3)
-                {
-                    //if the whale is female and is old enough to breed 
-                    if (!isMale && age >= BREEDING_AGE)
-                    {
-                        return true;  //the whale can breed
-                    }
-                }
-                
-                //if the adjacent animal is a female whale and the food level is greater than 3
-                if(animal instanceof Whale && !isMale && foodLevel >3)
-                {
-                    //if the whale is male and is old enough to breed
-                    if (isMale && age >= BREEDING_AGE)
-                    {
-                        return true;  //the whale can breed
-                    }
-                }
-            }
-        }
-        return age >= BREEDING_AGE;
+        return getAge() >= getField().getRules().getBreedingAge(Species.WHALE);
     }
 
     /**
@@ -248,6 +190,6 @@ public class Whale extends Animal
      */
     public int returnHunger()
     {
-        return foodLevel;
+        return getFoodLevel();
     }
 }
@@ -0,0 +1,214 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A stress test of the concurrent field (see Field.setConcurrent).
+ * Fish are packed into a small field and act on many threads at once,
+ * without tiles and without locks, so that movers and breeders keep
+ * racing for the same free cells. Neighbouring fish are dealt to
+ * different threads to make the races as frequent as possible.
+ *
+ * After every round the grid is checked against the entity store:
+ * every live fish must be found in its cell, every occupied cell must
+ * hold a live fish that knows it is there, and the bitboards must
+ * agree with the grid. An entity that was ever overwritten breaks the
+ * first of these, so a run that passes has never lost one.
+ *
+ * Compile and run from the project directory:
+ *     javac -d out *.java bench/*.java
+ *     java -cp out FieldStress [threads] [rounds] [size]
+ * It stops with exit status 1 at the first inconsistency.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class FieldStress
+{
+    // The seed the field is made with.
+    private static final long SEED = 42;
+
+    // The share of the field's cells filled with fish at the start.
+    private static final double START_DENSITY = 0.5;
+
+    /**
+     * Run the stress test.
+     * @param args Optionally the number of threads, of rounds and the
+     *             width and depth of the field.
+     * @throws Exception If a thread fails.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                                      : Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        Field field = new Field(size, size, SEED);
+        field.setConcurrent(true);
+        List<Animal> fish = new ArrayList<>();
+        for(int cell = 0; cell < size * size; cell++) {
+            if(Randomizer.toDouble(Randomizer.streamSeed(SEED, 0, cell)) < START_DENSITY) {
+                fish.add(new Fish(true, field, field.locationOf(cell)));
+            }
+        }
+        fail(check(field, fish), 0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<List<Animal>> young = new ArrayList<>();
+        List<Future<?>> done = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            young.add(new ArrayList<>());
+        }
+        long acts = 0;
+        long births = 0;
+        long start = System.nanoTime();
+        for(int round = 1; round <= rounds; round++) {
+            field.setStep(round);
+            List<Animal> acting = fish;
+            done.clear();
+            for(int t = 0; t < threads; t++) {
+                int first = t;
+                List<Animal> newborn = young.get(t);
+                done.add(pool.submit(() -> {
+                    for(int i = first; i < acting.size(); i += threads) {
+                        Animal animal = acting.get(i);
+                        field.startAct(animal.getId());
+                        animal.act(newborn);
+                    }
+                }));
+            }
+            for(Future<?> task : done) {
+                task.get();
+            }
+            acts += fish.size();
+
+            List<Animal> survivors = new ArrayList<>();
+            for(Animal animal : fish) {
+                if(animal.isAlive()) {
+                    survivors.add(animal);
+                }
+            }
+            for(List<Animal> newborn : young) {
+                for(Animal animal : newborn) {
+                    if(animal.isAlive()) {
+                        survivors.add(animal);
+                        births++;
+                    }
+                }
+            }
+            fail(check(field, survivors), round);
+            for(Animal animal : fish) {
+                if(!animal.isAlive()) {
+                    field.getEntities().release(animal.getId());
+                }
+            }
+            for(List<Animal> newborn : young) {
+                for(Animal animal : newborn) {
+                    if(!animal.isAlive()) {
+                        field.getEntities().release(animal.getId());
+                    }
+                }
+                newborn.clear();
+            }
+            fish = survivors;
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.println(rounds + " rounds on " + threads + " threads, " + size + "x" + size
+                           + " field: " + acts + " acts and " + births + " births in "
+                           + elapsed / 1000000 + " ms, " + fish.size() + " fish left");
+        System.out.println("No entity was ever overwritten.");
+    }
+
+    /**
+     * Check the grid against the entity store and the bitboards.
+     * @param field The field.
+     * @param fish The fish alive in it.
+     * @return What is wrong, or null if nothing is.
+     */
+    private static String check(Field field, List<Animal> fish)
+    {
+        EntityStore entities = field.getEntities();
+        for(Animal animal : fish) {
+            int id = animal.getId();
+            int cell = entities.getCell(id);
+            if(cell == EntityStore.NO_CELL) {
+                return "live fish " + id + " has no cell";
+            }
+            if(field.getIdAt(cell) != id) {
+                return "fish " + id + " was overwritten by " + field.getIdAt(cell) + " in cell " + cell;
+            }
+        }
+        int occupied = 0;
+        int cells = field.getDepth() * field.getWidth();
+        for(int cell = 0; cell < cells; cell++) {
+            int id = field.getIdAt(cell);
+            if(id != EntityStore.NONE) {
+                occupied++;
+                if(entities.getCell(id) != cell) {
+                    return "cell " + cell + " holds " + id + ", which is in cell " + entities.getCell(id);
+                }
+            }
+            Location location = field.locationOf(cell);
+            int free = 0;
+            int taken = 0;
+            for(int n = 0; n < Field.MAX_ADJACENT; n++) {
+                Location next = neighbourOrNull(field, location, n);
+                if(next != null) {
+                    if(field.getObjectAt(next) == null) {
+                        free |= 1 << n;
+                    }
+                    else {
+                        taken |= 1 << n;
+                    }
+                }
+            }
+            if(field.freeAdjacentMask(location) != free
+               || field.adjacentMask(location, Species.FISH.bit()) != taken) {
+                return "the bitboards disagree with the grid around cell " + cell;
+            }
+        }
+        if(occupied != fish.size()) {
+            return occupied + " cells are occupied by " + fish.size() + " live fish";
+        }
+        if(entities.count(Species.FISH) != fish.size()) {
+            return "the store counts " + entities.count(Species.FISH) + " of " + fish.size() + " fish";
+        }
+        return null;
+    }
+
+    /**
+     * @param field The field.
+     * @param location A location.
+     * @param n A neighbour, numbered as in Field.adjacentMask.
+     * @return The neighbour, or null if it lies outside the field.
+     */
+    private static Location neighbourOrNull(Field field, Location location, int n)
+    {
+        int[] rows = { -1, -1, -1, 0, 1, 1, 1, 0 };
+        int[] cols = { -1, 0, 1, 1, 1, 0, -1, -1 };
+        int row = location.getRow() + rows[n];
+        int col = location.getCol() + cols[n];
+        if(row < 0 || row >= field.getDepth() || col < 0 || col >= field.getWidth()) {
+            return null;
+        }
+        return field.locationAt(row, col);
+    }
+
+    /**
+     * Stop the test if a check failed.
+     * @param problem What the check found wrong, or null.
+     * @param round The round that was checked.
+     */
+    private static void fail(String problem, int round)
+    {
+        if(problem != null) {
+            System.out.println("Round " + round + ": " + problem);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * A soak test of the simulation's memory: it runs a field without a
+ * display for many steps and checks that nothing grows without bound.
+ *
+ * Every step, no more animals and plants may be alive than the field
+ * has cells, and the animal and plant lists must hold no more than
+ * twice that: the dead are removed from them as the step ends, but
+ * newborns that died in the step stay listed until the next. The
+ * highest id the entity store has handed out must stay below twice
+ * the number of cells: ids are reused, and at most every cell's
+ * occupant and every cell's newborn hold one at a time. Every
+ * so many steps the heap is collected, and the heap in use must stay
+ * within a fixed margin of what it was once the run had settled.
+ * Every birth and death published must also name a cell of the field.
+ *
+ * Compile and run from the project directory:
+ *     javac -d out *.java bench/*.java
+ *     java -cp out Soak [steps] [width] [depth] [seed]
+ * Pass -Dsynchronous=true to soak a synchronous run (see NextGrid).
+ * It stops with exit status 1 at the first bound broken.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+public class Soak
+{
+    // The steps between measurements of the heap.
+    private static final int HEAP_INTERVAL = 5000;
+
+    // The step at which the heap in use is taken as the baseline.
+    private static final int SETTLED_STEP = 1000;
+
+    // How much the heap in use may grow beyond the baseline.
+    private static final long HEAP_MARGIN = 32L * 1024 * 1024;
+
+    /**
+     * Run the soak test.
+     * @param args Optionally the number of steps, the width and depth
+     *             of the field and the seed.
+     */
+    public static void main(String[] args)
+    {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 150;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        Simulator simulator = new Simulator(depth, width, seed, new NullObserver());
+        simulator.setSynchronous(Boolean.getBoolean("synchronous"));
+        EntityStore entities = simulator.getField().getEntities();
+        EventRing.Subscription events = simulator.getEvents().subscribe();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        int cells = width * depth;
+        long baseline = -1;
+        long peakHeap = 0;
+        int peakIds = 0;
+        long start = System.nanoTime();
+        for(int step = 1; step <= steps; step++) {
+            simulator.simulateOneStep();
+            int now = step;
+            events.poll((type, when, id, species, cell, predator) -> {
+                if(cell < 0 || cell >= cells) {
+                    fail(now, species.getName() + " " + id + " has an event " + type + " in cell " + cell);
+                }
+            });
+            int population = simulator.getAnimalCount() + simulator.getPlantCount();
+            if(population > 2 * cells) {
+                fail(step, population + " animals and plants are listed in " + cells + " cells");
+            }
+            int alive = 0;
+            for(int kind = 0; kind < Species.count(); kind++) {
+                alive += entities.count(Species.fromOrdinal(kind));
+            }
+            if(alive > cells) {
+                fail(step, alive + " animals and plants live in " + cells + " cells");
+            }
+            int ids = entities.idLimit();
+            peakIds = Math.max(peakIds, ids);
+            if(ids > 2 * cells) {
+                fail(step, ids + " ids have been handed out for " + cells + " cells");
+            }
+            if(step == SETTLED_STEP || step % HEAP_INTERVAL == 0 || step == steps) {
+                long used = usedHeapAfterGc(memory);
+                peakHeap = Math.max(peakHeap, used);
+                if(baseline < 0 && step >= SETTLED_STEP) {
+                    baseline = used;
+                }
+                else if(baseline >= 0 && used > baseline + HEAP_MARGIN) {
+                    fail(step, "the heap in use grew from " + baseline / 1024 + " kB to " + used / 1024 + " kB");
+                }
+                System.out.println("Step " + step + ": " + population + " animals and plants, "
+                                   + ids + " ids, " + used / 1024 + " kB in use");
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(steps + " steps of a " + width + "x" + depth + " field in "
+                           + elapsed / 1000000 + " ms; at most " + peakIds + " ids and "
+                           + peakHeap / 1024 + " kB in use. Memory stayed bounded.");
+    }
+
+    /**
+     * @param memory The JVM's memory bean.
+     * @return The bytes of heap in use after a collection.
+     */
+    private static long usedHeapAfterGc(MemoryMXBean memory)
+    {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Stop the test because a bound was broken.
+     * @param step The step it was broken in.
+     * @param problem What was wrong.
+     */
+    private static void fail(int step, String problem)
+    {
+        System.out.println("Step " + step + ": " + problem);
+        System.exit(1);
+    }
+}
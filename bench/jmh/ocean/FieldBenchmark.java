@@ -0,0 +1,90 @@
+package ocean;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Neighbourhood queries on a freshly populated field. Every call asks
+ * about the next cell of the field, so that the queries sweep the
+ * whole of it.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FieldBenchmark
+{
+    // The size of the field, as width x depth.
+    @Param({ "150x100", "1000x1000" })
+    public String size;
+
+    // The field, its number of cells and the next cell to ask about.
+    private Field field;
+    private int cells;
+    private int cell;
+
+    // The buffer the cell queries write into.
+    private final int[] buffer = new int[Field.MAX_ADJACENT];
+
+    // The species the adjacentMask query looks for.
+    private final int prey = Species.SHRIMP.bit() | Species.PLANKTON.bit();
+
+    @Setup
+    public void setUp()
+    {
+        field = Setups.simulator(size).getField();
+        cells = field.getDepth() * field.getWidth();
+        cell = 0;
+    }
+
+    /**
+     * @return The next cell to ask about.
+     */
+    private int nextCell()
+    {
+        cell = cell + 1 == cells ? 0 : cell + 1;
+        return cell;
+    }
+
+    @Benchmark
+    public int adjacentCells()
+    {
+        int next = nextCell();
+        return field.adjacentCells(field.locationOf(next), buffer, next & 7);
+    }
+
+    @Benchmark
+    public int freeAdjacentCells()
+    {
+        int next = nextCell();
+        return field.freeAdjacentCells(field.locationOf(next), buffer, next & 7);
+    }
+
+    @Benchmark
+    public int freeAdjacentMask()
+    {
+        return field.freeAdjacentMask(field.locationOf(nextCell()));
+    }
+
+    @Benchmark
+    public int adjacentMask()
+    {
+        return field.adjacentMask(field.locationOf(nextCell()), prey);
+    }
+
+    @Benchmark
+    public int adjacentLocations()
+    {
+        int next = nextCell();
+        return field.adjacentLocations(field.locationOf(next), next & 7).size();
+    }
+
+    @Benchmark
+    public int getFreeAdjacentLocations()
+    {
+        int next = nextCell();
+        return field.getFreeAdjacentLocations(field.locationOf(next), next & 7).size();
+    }
+}
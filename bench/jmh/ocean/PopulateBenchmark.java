@@ -0,0 +1,36 @@
+package ocean;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Populating a field from scratch with Simulator.reset.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PopulateBenchmark
+{
+    // The size of the field, as width x depth.
+    @Param({ "100x100", "1000x1000" })
+    public String size;
+
+    // The simulation reset on every call.
+    private Simulator simulator;
+
+    @Setup
+    public void setUp()
+    {
+        simulator = Setups.simulator(size);
+    }
+
+    @Benchmark
+    public int reset()
+    {
+        simulator.reset();
+        return simulator.getAnimalCount();
+    }
+}
@@ -0,0 +1,29 @@
+package ocean;
+
+/**
+ * What the benchmarks have in common: the seed their fields are made
+ * with, and how a field size given as a parameter is read.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+final class Setups
+{
+    // The seed every benchmark's field is made with.
+    static final long SEED = 42;
+
+    private Setups()
+    {
+    }
+
+    /**
+     * Create a populated simulation without a display.
+     * @param size The size of the field, as width x depth, e.g. 150x100.
+     * @return The simulation.
+     */
+    static Simulator simulator(String size)
+    {
+        String[] parts = size.split("x");
+        return new Simulator(Integer.parseInt(parts[1]), Integer.parseInt(parts[0]), SEED, new NullObserver());
+    }
+}
@@ -0,0 +1,87 @@
+package ocean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One act of every member of a species in a 256x256 field. In dense
+ * surroundings the species stands on every other cell of every other
+ * row and all other cells hold its food, or its own kind if it eats
+ * nothing; in sparse surroundings it stands on every fourth cell of
+ * every fourth row, alone. The field is made again before every call,
+ * as acting changes it. The score is the time for all members to act
+ * once.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpeciesBenchmark
+{
+    // The width and depth of the field.
+    private static final int SIZE = 256;
+
+    // What fills the other cells around each species when dense; a
+    // species not listed is surrounded by its own kind.
+    private static final Map<Species, Species> COMPANY =
+        Map.of(Species.SHARK, Species.FISH,
+               Species.FISH, Species.PLANKTON,
+               Species.WHALE, Species.PLANKTON,
+               Species.PLANKTON, Species.SEAWEED);
+
+    // The species acting.
+    @Param({ "SHARK", "FISH", "WHALE", "PLANKTON", "SHRIMP", "SEAWEED" })
+    public Species species;
+
+    // Whether the species is packed among its food or spread out.
+    @Param({ "dense", "sparse" })
+    public String surroundings;
+
+    // The members of the species, and lists for their young.
+    private final List<Object> actors = new ArrayList<>();
+    private final List<Animal> newAnimals = new ArrayList<>();
+    private final List<Plant> newPlants = new ArrayList<>();
+
+    @Setup(Level.Invocation)
+    public void setUp()
+    {
+        boolean dense = surroundings.equals("dense");
+        int spacing = dense ? 2 : 4;
+        Species company = COMPANY.getOrDefault(species, species);
+        Field field = new Field(SIZE, SIZE, Setups.SEED);
+        actors.clear();
+        newAnimals.clear();
+        newPlants.clear();
+        for(int row = 0; row < SIZE; row++) {
+            for(int col = 0; col < SIZE; col++) {
+                Location location = field.locationAt(row, col);
+                if(row % spacing == 0 && col % spacing == 0) {
+                    actors.add(species.create(true, field, location));
+                }
+                else if(dense) {
+                    company.create(true, field, location);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int act()
+    {
+        for(int i = 0; i < actors.size(); i++) {
+            Object actor = actors.get(i);
+            if(actor instanceof Animal) {
+                ((Animal) actor).act(newAnimals);
+            }
+            else {
+                ((Plant) actor).act(newPlants);
+            }
+        }
+        return newAnimals.size() + newPlants.size();
+    }
+}
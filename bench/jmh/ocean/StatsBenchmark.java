@@ -0,0 +1,43 @@
+package ocean;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The population statistics of a freshly populated field.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatsBenchmark
+{
+    // The size of the field, as width x depth.
+    @Param({ "150x100", "1000x1000" })
+    public String size;
+
+    // The field, and the statistics of it.
+    private Field field;
+    private FieldStats stats;
+
+    @Setup
+    public void setUp()
+    {
+        field = Setups.simulator(size).getField();
+        stats = new FieldStats();
+    }
+
+    @Benchmark
+    public boolean isViable()
+    {
+        return stats.isViable(field);
+    }
+
+    @Benchmark
+    public String getPopulationDetails()
+    {
+        return stats.getPopulationDetails(field);
+    }
+}
@@ -0,0 +1,38 @@
+package ocean;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Whole steps of a simulation without a display. The simulation is
+ * populated once per fork and then runs on from step to step, as it
+ * would for real.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StepBenchmark
+{
+    // The size of the field, as width x depth.
+    @Param({ "150x100", "1000x1000", "4000x4000" })
+    public String size;
+
+    // The simulation.
+    private Simulator simulator;
+
+    @Setup
+    public void setUp()
+    {
+        simulator = Setups.simulator(size);
+    }
+
+    @Benchmark
+    public int simulateOneStep()
+    {
+        simulator.simulateOneStep();
+        return simulator.getAnimalCount();
+    }
+}
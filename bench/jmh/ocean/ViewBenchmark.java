@@ -0,0 +1,40 @@
+package ocean;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A step of the simulation with its window open, which includes
+ * SimulatorView.showStatus handing the changes to the display. It
+ * needs a display, so gradle jmh leaves it out; run it from the jar.
+ *
+ * @author Amirali Koochaki . Marouane El Moubarik Alaoui .Seyed Mohammad Reza Shahrestani
+ * @version 21.02.2020 (2)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ViewBenchmark
+{
+    // The simulation and its window.
+    private Simulator simulator;
+
+    @Setup
+    public void setUp()
+    {
+        simulator = new Simulator(100, 150);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        simulator.stop();
+    }
+
+    @Benchmark
+    public int simulateOneStep()
+    {
+        simulator.simulateOneStep();
+        return simulator.getAnimalCount();
+    }
+}